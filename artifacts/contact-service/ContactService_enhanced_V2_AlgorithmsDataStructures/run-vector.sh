@@ -0,0 +1,20 @@
+#!/bin/sh
+# Builds the contact service with the optional SIMD byte matcher and runs it.
+#
+# The sources in src/ compile with plain javac:
+#     javac -d out src/contact/*.java && java -cp out contact.ContactApp
+# VectorByteMatcher in src-vector/ needs the incubating Vector API, so it is
+# compiled, and the JVM started, with --add-modules jdk.incubator.vector.
+#
+# Usage: ./run-vector.sh [main-class] [args...]   (default contact.ContactApp)
+set -e
+cd "$(dirname "$0")"
+out=out-vector
+mkdir -p "$out"
+javac --add-modules jdk.incubator.vector -d "$out" src/contact/*.java src-vector/contact/*.java
+main=contact.ContactApp
+if [ $# -gt 0 ]; then
+    main=$1
+    shift
+fi
+exec java --add-modules jdk.incubator.vector -cp "$out" "$main" "$@"
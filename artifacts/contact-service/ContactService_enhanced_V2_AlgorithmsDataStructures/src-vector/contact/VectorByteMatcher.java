@@ -0,0 +1,61 @@
+package contact;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD substring matcher built on the {@code jdk.incubator.vector} API.
+ *
+ * Compares a full vector of candidate start positions at once against the
+ * needle's first and last bytes; only lanes where both match are verified
+ * byte by byte.
+ *
+ * Kept in its own source root so the rest of the package compiles with
+ * plain javac. {@code run-vector.sh} compiles it with
+ * {@code --add-modules jdk.incubator.vector} and runs with the same flag;
+ * without the module or this class, {@link ByteMatcher#best()} falls back
+ * to the scalar matcher.
+ */
+final class VectorByteMatcher implements ByteMatcher {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    @Override
+    public void scan(byte[] hay, int from, int to, byte[] needle, Hits hits) {
+        int m = needle.length;
+        int lanes = SPECIES.length();
+        ByteVector first = ByteVector.broadcast(SPECIES, needle[0]);
+        ByteVector last = ByteVector.broadcast(SPECIES, needle[m - 1]);
+
+        int i = from;
+        int bound = to - m - lanes + 1; // both loads must stay inside [from, to)
+        for (; i <= bound; i += lanes) {
+            ByteVector head = ByteVector.fromArray(SPECIES, hay, i);
+            ByteVector tail = ByteVector.fromArray(SPECIES, hay, i + m - 1);
+            VectorMask<Byte> candidates = head.eq(first).and(tail.eq(last));
+            if (!candidates.anyTrue()) {
+                continue; // common case: no candidate in this block
+            }
+            long bits = candidates.toLong();
+            while (bits != 0) {
+                int pos = i + Long.numberOfTrailingZeros(bits);
+                if (m <= 2 || ByteMatcher.matchesAt(hay, pos, needle)) {
+                    hits.at(pos);
+                }
+                bits &= bits - 1;
+            }
+        }
+        // Scalar tail
+        for (int lastStart = to - m; i <= lastStart; i++) {
+            if (hay[i] == needle[0] && ByteMatcher.matchesAt(hay, i, needle)) {
+                hits.at(i);
+            }
+        }
+    }
+
+    @Override
+    public String name() {
+        return "vector(" + SPECIES.vectorBitSize() + "-bit)";
+    }
+}
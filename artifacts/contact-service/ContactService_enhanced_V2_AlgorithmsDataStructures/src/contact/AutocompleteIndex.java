@@ -0,0 +1,426 @@
+package contact;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Prefix index over contact IDs, first names and last names for
+ * {@link ContactService#autocomplete(String, int)}.
+ *
+ * Keys are lower-cased and stored in a compressed trie (a radix tree: each
+ * edge carries a whole run of characters). Every node keeps the best
+ * {@value #MAX_SUGGESTIONS} entries of its subtree, ordered by key and then
+ * contact ID, so a query walks at most one edge per typed character and
+ * copies a precomputed list. Adds update those lists on the path to the key
+ * in O(depth * k); removals rebuild only the lists that held the removed
+ * entry, from the node's own entries and its children's lists.
+ *
+ * Not thread-safe: the service calls it under its lock.
+ */
+final class AutocompleteIndex implements ContactListener {
+
+    static final int MAX_SUGGESTIONS = 10;
+
+    private static final char[] NO_CHARS = new char[0];
+    private static final Node[] NO_NODES = new Node[0];
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    private Node root = new Node("");
+    private final List<Node> path = new ArrayList<>();
+    private int size;
+
+    /**
+     * Returns contacts whose ID, first name or last name starts with a
+     * prefix, ignoring case. A contact matching on several fields is
+     * returned once, at its best position.
+     *
+     * @param prefix typed text
+     * @param limit maximum results, at most {@value #MAX_SUGGESTIONS}
+     * @return matching contacts, best first
+     */
+    List<Contact> suggest(String prefix, int limit) {
+        String p = prefix.toLowerCase(Locale.ROOT);
+        Node node = root;
+        int i = 0;
+        while (i < p.length()) {
+            int c = node.childIndex(p.charAt(i));
+            if (c < 0) {
+                return new ArrayList<>(0);
+            }
+            Node child = node.kids[c];
+            int common = commonPrefix(child.edge, p, i);
+            if (i + common == p.length()) {
+                node = child; // the prefix ends on or inside this edge
+                break;
+            }
+            if (common < child.edge.length()) {
+                return new ArrayList<>(0);
+            }
+            node = child;
+            i += common;
+        }
+
+        Set<Contact> out = new LinkedHashSet<>();
+        for (Entry e : node.top) {
+            if (out.size() == limit) {
+                break;
+            }
+            out.add(e.contact);
+        }
+        if (out.size() < limit && node.top.length == MAX_SUGGESTIONS) {
+            // Duplicates used up the precomputed list; walk the subtree in key order instead
+            out.clear();
+            collect(node, out, limit);
+        }
+        return new ArrayList<>(out);
+    }
+
+    /**
+     * @return number of indexed keys (three per contact)
+     */
+    int size() {
+        return size;
+    }
+
+    // ---- ContactListener ----
+
+    @Override
+    public void contactAdded(Contact contact) {
+        add(new Entry(contact, ContactQuery.Field.ID, contact.getContactID()), true);
+        add(new Entry(contact, ContactQuery.Field.FIRST_NAME, contact.getFirstName()), true);
+        add(new Entry(contact, ContactQuery.Field.LAST_NAME, contact.getLastName()), true);
+    }
+
+    @Override
+    public void contactDeleted(Contact contact) {
+        remove(new Entry(contact, ContactQuery.Field.ID, contact.getContactID()));
+        remove(new Entry(contact, ContactQuery.Field.FIRST_NAME, contact.getFirstName()));
+        remove(new Entry(contact, ContactQuery.Field.LAST_NAME, contact.getLastName()));
+    }
+
+    @Override
+    public void contactUpdated(Contact contact, ContactField field, String oldValue, String newValue) {
+        if (field == ContactField.FIRST_NAME || field == ContactField.LAST_NAME) {
+            ContactQuery.Field f = ContactQuery.Field.of(field);
+            remove(new Entry(contact, f, oldValue));
+            add(new Entry(contact, f, newValue), true);
+        }
+    }
+
+    @Override
+    public void contactsLoaded(List<Contact> contacts) {
+        // Bulk build: insert without maintaining lists, then fill them in one post-order pass
+        root = new Node("");
+        size = 0;
+        for (Contact c : contacts) {
+            add(new Entry(c, ContactQuery.Field.ID, c.getContactID()), false);
+            add(new Entry(c, ContactQuery.Field.FIRST_NAME, c.getFirstName()), false);
+            add(new Entry(c, ContactQuery.Field.LAST_NAME, c.getLastName()), false);
+        }
+        fillTops(root);
+    }
+
+    // ---- trie maintenance ----
+
+    private void add(Entry e, boolean maintainTops) {
+        String key = e.key;
+        Node node = root;
+        path.clear();
+        path.add(node);
+        int i = 0;
+        while (i < key.length()) {
+            int c = node.childIndex(key.charAt(i));
+            if (c < 0) {
+                Node leaf = new Node(key.substring(i));
+                node.addChild(leaf);
+                node = leaf;
+                path.add(node);
+                break;
+            }
+            Node child = node.kids[c];
+            int common = commonPrefix(child.edge, key, i);
+            if (common < child.edge.length()) {
+                child = split(node, c, common);
+            }
+            node = child;
+            path.add(node);
+            i += common;
+        }
+        node.addTerminal(e, maintainTops);
+        size++;
+        if (maintainTops) {
+            for (Node n : path) {
+                n.offer(e);
+            }
+        }
+    }
+
+    private void remove(Entry e) {
+        String key = e.key;
+        Node node = root;
+        path.clear();
+        path.add(node);
+        int i = 0;
+        while (i < key.length()) {
+            int c = node.childIndex(key.charAt(i));
+            if (c < 0) {
+                return;
+            }
+            Node child = node.kids[c];
+            if (!key.startsWith(child.edge, i)) {
+                return;
+            }
+            node = child;
+            path.add(node);
+            i += child.edge.length();
+        }
+        if (!node.removeTerminal(e)) {
+            return;
+        }
+        size--;
+
+        // Drop nodes left empty, then re-compress a pass-through node into its only child
+        int last = path.size() - 1;
+        while (last > 0 && path.get(last).isEmpty()) {
+            path.get(last - 1).removeChild(path.get(last));
+            last--;
+        }
+        Node tail = path.get(last);
+        if (last > 0 && tail.kids.length == 1 && !tail.hasTerminals()) {
+            tail.absorbOnlyChild();
+        }
+        for (int j = last; j >= 0; j--) {
+            Node n = path.get(j);
+            if (n.topContains(e)) {
+                n.recomputeTop();
+            }
+        }
+    }
+
+    /**
+     * Splits the edge to {@code parent.kids[c]} after {@code at} characters
+     * and returns the new node at the split point.
+     */
+    private static Node split(Node parent, int c, int at) {
+        Node old = parent.kids[c];
+        Node mid = new Node(old.edge.substring(0, at));
+        old.edge = old.edge.substring(at);
+        mid.keys = new char[] {old.edge.charAt(0)};
+        mid.kids = new Node[] {old};
+        mid.top = old.top;
+        parent.kids[c] = mid;
+        return mid;
+    }
+
+    private static void fillTops(Node n) {
+        for (Node k : n.kids) {
+            fillTops(k);
+        }
+        if (n.many != null) {
+            n.many.sort(null); // appended unsorted during the bulk build
+        }
+        n.recomputeTop();
+    }
+
+    private static void collect(Node n, Set<Contact> out, int limit) {
+        for (Entry e : n.terminals()) {
+            if (out.size() == limit) {
+                return;
+            }
+            out.add(e.contact);
+        }
+        for (Node k : n.kids) {
+            if (out.size() == limit) {
+                return;
+            }
+            collect(k, out, limit);
+        }
+    }
+
+    private static int commonPrefix(String edge, String key, int from) {
+        int n = Math.min(edge.length(), key.length() - from);
+        int i = 0;
+        while (i < n && edge.charAt(i) == key.charAt(from + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    // ---- data ----
+
+    /**
+     * One indexed key: a lower-cased field value and the contact it belongs to.
+     */
+    private static final class Entry implements Comparable<Entry> {
+        final String key;
+        final String id;
+        final Contact contact;
+        final ContactQuery.Field field;
+
+        Entry(Contact contact, ContactQuery.Field field, String value) {
+            this.key = value.toLowerCase(Locale.ROOT);
+            this.id = contact.getContactID();
+            this.contact = contact;
+            this.field = field;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            int c = key == o.key ? 0 : key.compareTo(o.key);
+            if (c == 0) {
+                c = id.compareTo(o.id);
+            }
+            return c != 0 ? c : field.compareTo(o.field);
+        }
+    }
+
+    private static final class Node {
+        String edge;                  // characters on the edge from the parent
+        char[] keys = NO_CHARS;       // first character of each child's edge, ascending
+        Node[] kids = NO_NODES;
+        Entry single;                 // the only entry ending here, or null
+        ArrayList<Entry> many;        // all entries ending here when there are several, ascending
+        Entry[] top = NO_ENTRIES;     // best entries in this subtree, ascending
+
+        Node(String edge) {
+            this.edge = edge;
+        }
+
+        int childIndex(char ch) {
+            return Arrays.binarySearch(keys, ch);
+        }
+
+        void addChild(Node child) {
+            int at = -childIndex(child.edge.charAt(0)) - 1;
+            char[] k = new char[keys.length + 1];
+            Node[] n = new Node[kids.length + 1];
+            System.arraycopy(keys, 0, k, 0, at);
+            System.arraycopy(kids, 0, n, 0, at);
+            k[at] = child.edge.charAt(0);
+            n[at] = child;
+            System.arraycopy(keys, at, k, at + 1, keys.length - at);
+            System.arraycopy(kids, at, n, at + 1, kids.length - at);
+            keys = k;
+            kids = n;
+        }
+
+        void removeChild(Node child) {
+            int at = childIndex(child.edge.charAt(0));
+            char[] k = new char[keys.length - 1];
+            Node[] n = new Node[kids.length - 1];
+            System.arraycopy(keys, 0, k, 0, at);
+            System.arraycopy(kids, 0, n, 0, at);
+            System.arraycopy(keys, at + 1, k, at, keys.length - at - 1);
+            System.arraycopy(kids, at + 1, n, at, kids.length - at - 1);
+            keys = k;
+            kids = n;
+        }
+
+        void absorbOnlyChild() {
+            Node child = kids[0];
+            edge = edge + child.edge;
+            keys = child.keys;
+            kids = child.kids;
+            single = child.single;
+            many = child.many;
+            top = child.top;
+        }
+
+        boolean hasTerminals() {
+            return single != null || many != null;
+        }
+
+        boolean isEmpty() {
+            return !hasTerminals() && kids.length == 0;
+        }
+
+        List<Entry> terminals() {
+            if (many != null) {
+                return many;
+            }
+            return single != null ? List.of(single) : List.of();
+        }
+
+        /**
+         * Adds an entry ending here. A sorted insert costs a binary search and
+         * an array shift; the bulk build appends and sorts once at the end.
+         */
+        void addTerminal(Entry e, boolean sorted) {
+            if (single == null && many == null) {
+                single = e;
+                return;
+            }
+            if (many == null) {
+                many = new ArrayList<>(4);
+                many.add(single);
+                single = null;
+            }
+            int at = sorted ? Collections.binarySearch(many, e) : -many.size() - 1;
+            if (at < 0) {
+                many.add(-at - 1, e);
+            }
+        }
+
+        boolean removeTerminal(Entry e) {
+            if (many != null) {
+                int at = Collections.binarySearch(many, e);
+                if (at < 0) {
+                    return false;
+                }
+                many.remove(at);
+                if (many.size() == 1) {
+                    single = many.get(0);
+                    many = null;
+                }
+                return true;
+            }
+            if (single != null && single.compareTo(e) == 0) {
+                single = null;
+                return true;
+            }
+            return false;
+        }
+
+        /** Inserts into the top list if it ranks within the best k. */
+        void offer(Entry e) {
+            int n = top.length;
+            if (n == MAX_SUGGESTIONS && e.compareTo(top[n - 1]) >= 0) {
+                return;
+            }
+            int at = -Arrays.binarySearch(top, e) - 1;
+            if (at < 0) {
+                return; // already present
+            }
+            Entry[] t = new Entry[Math.min(n + 1, MAX_SUGGESTIONS)];
+            System.arraycopy(top, 0, t, 0, at);
+            t[at] = e;
+            System.arraycopy(top, at, t, at + 1, t.length - at - 1);
+            top = t;
+        }
+
+        boolean topContains(Entry e) {
+            return Arrays.binarySearch(top, e) >= 0;
+        }
+
+        /** Rebuilds the top list from this node's entries and the children's lists. */
+        void recomputeTop() {
+            List<Entry> candidates = new ArrayList<>();
+            for (Entry e : terminals()) {
+                if (candidates.size() == MAX_SUGGESTIONS) {
+                    break; // terminals are sorted; the rest cannot make the cut
+                }
+                candidates.add(e);
+            }
+            for (Node k : kids) {
+                candidates.addAll(Arrays.asList(k.top));
+            }
+            candidates.sort(null);
+            top = candidates.subList(0, Math.min(MAX_SUGGESTIONS, candidates.size())).toArray(NO_ENTRIES);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package contact;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Repository that keeps contacts in memory and appends every change to a
+ * binary log, so a write costs one small append instead of a full rewrite.
+ *
+ * Log layout: a magic number, then records of
+ * {@code [int length][byte op][payload][int crc32c]} where the payload is
+ * modified-UTF-8 strings. Opening replays the log; a torn or corrupt record
+ * ends the replay and the file is cut back to the last good record. Once
+ * the log holds more than twice as many records as there are contacts it
+ * is rewritten in place with one ADD per contact.
+ */
+public class BinaryFileContactRepository extends InMemoryContactRepository {
+
+    private static final int MAGIC = 0x434C4F47; // "CLOG"
+    private static final int HEADER_BYTES = 4;
+    private static final int COMPACT_MIN_RECORDS = 1024;
+
+    private static final byte OP_ADD = 0;
+    private static final byte OP_DELETE = 1;
+    private static final byte OP_UPDATE = 2;
+
+    private final Path file;
+    private final boolean sync;
+    private final CRC32C crc = new CRC32C();
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(128);
+    private final DataOutputStream out = new DataOutputStream(buffer);
+    private FileChannel channel;
+    private long records;
+
+    /**
+     * Opens a log without forcing each write to disk.
+     *
+     * @param file log file, created if missing
+     * @throws IllegalArgumentException if file is null
+     * @throws IllegalStateException if the file cannot be read or is not a contact log
+     */
+    public BinaryFileContactRepository(Path file) {
+        this(file, false);
+    }
+
+    /**
+     * Opens a log, replaying whatever it already holds.
+     *
+     * @param file log file, created if missing
+     * @param sync true to force every append to the device before returning
+     * @throws IllegalArgumentException if file is null
+     * @throws IllegalStateException if the file cannot be read or is not a contact log
+     */
+    public BinaryFileContactRepository(Path file, boolean sync) {
+        if (file == null) {
+            throw new IllegalArgumentException("file cannot be null");
+        }
+        this.file = file;
+        this.sync = sync;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (channel.size() == 0) {
+                channel.write(ByteBuffer.allocate(HEADER_BYTES).putInt(0, MAGIC));
+            } else {
+                replay();
+            }
+        } catch (IOException | RuntimeException ex) {
+            closeQuietly();
+            if (ex instanceof RuntimeException) {
+                throw (RuntimeException) ex;
+            }
+            throw new IllegalStateException("Failed to open contact log: " + file, ex);
+        }
+    }
+
+    public Path getFile() {return file;}
+
+    @Override
+    public void add(Contact contact) {
+        synchronized (service) {
+            super.add(contact);
+            append(OP_ADD, contact.getContactID(), contact, null, null);
+        }
+    }
+
+    @Override
+    public void addAll(List<Contact> contacts) {
+        synchronized (service) {
+            super.addAll(contacts);
+            for (Contact c : contacts) {
+                append(OP_ADD, c.getContactID(), c, null, null);
+            }
+        }
+    }
+
+    @Override
+    public void update(String id, ContactField field, String value) {
+        synchronized (service) {
+            super.update(id, field, value);
+            append(OP_UPDATE, id, null, field, value);
+        }
+    }
+
+    @Override
+    public void delete(String id) {
+        synchronized (service) {
+            super.delete(id);
+            append(OP_DELETE, id, null, null, null);
+        }
+    }
+
+    /**
+     * Rewrites the log with one ADD record per current contact.
+     *
+     * @throws IllegalStateException if an I/O error occurs
+     */
+    public void compact() {
+        synchronized (service) {
+            Path tmp = file.resolveSibling(file.getFileName() + ".compact");
+            try {
+                try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+                    ch.write(ByteBuffer.allocate(HEADER_BYTES).putInt(0, MAGIC));
+                    for (Contact c : service.getAllContacts()) {
+                        ch.write(encode(OP_ADD, c.getContactID(), c, null, null));
+                    }
+                    ch.force(true);
+                }
+                channel.close();
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                channel.position(channel.size());
+                records = service.size();
+            } catch (IOException ex) {
+                throw new IllegalStateException("Failed to compact contact log: " + file, ex);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (service) {
+            try {
+                channel.force(true);
+                channel.close();
+            } catch (IOException ex) {
+                throw new IllegalStateException("Failed to close contact log: " + file, ex);
+            }
+        }
+    }
+
+    // ---- private helpers ----
+
+    private void append(byte op, String id, Contact c, ContactField field, String value) {
+        try {
+            channel.write(encode(op, id, c, field, value));
+            if (sync) {
+                channel.force(false);
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to append to contact log: " + file, ex);
+        }
+        records++;
+        if (records > COMPACT_MIN_RECORDS && records > 2L * service.size()) {
+            compact();
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException ignored) {
+            // already failing
+        }
+    }
+
+    private ByteBuffer encode(byte op, String id, Contact c, ContactField field, String value) throws IOException {
+        buffer.reset();
+        out.writeInt(0); // length, patched below
+        out.writeByte(op);
+        out.writeUTF(id);
+        if (op == OP_ADD) {
+            out.writeUTF(c.getFirstName());
+            out.writeUTF(c.getLastName());
+            out.writeUTF(c.getPhone());
+            out.writeUTF(c.getAddress());
+        } else if (op == OP_UPDATE) {
+            out.writeByte(field.ordinal());
+            out.writeUTF(value);
+        }
+        out.writeInt(0); // crc, patched below
+        ByteBuffer rec = ByteBuffer.wrap(buffer.toByteArray());
+        int bodyLength = rec.limit() - 8;
+        crc.reset();
+        crc.update(rec.array(), 4, bodyLength);
+        rec.putInt(0, bodyLength);
+        rec.putInt(rec.limit() - 4, (int) crc.getValue());
+        return rec;
+    }
+
+    private void replay() throws IOException {
+        byte[] data = Files.readAllBytes(file);
+        if (data.length < HEADER_BYTES || ByteBuffer.wrap(data).getInt(0) != MAGIC) {
+            throw new IllegalStateException("Not a contact log: " + file);
+        }
+        Map<String, Contact> state = new LinkedHashMap<>();
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        int pos = HEADER_BYTES;
+        while (pos + 8 <= data.length) {
+            int length = buf.getInt(pos);
+            if (length <= 0 || pos + 8L + length > data.length) {
+                break; // torn tail
+            }
+            crc.reset();
+            crc.update(data, pos + 4, length);
+            if (buf.getInt(pos + 4 + length) != (int) crc.getValue()) {
+                break;
+            }
+            apply(state, new DataInputStream(new ByteArrayInputStream(data, pos + 4, length)));
+            records++;
+            pos += 8 + length;
+        }
+        if (pos < data.length) {
+            channel.truncate(pos);
+        }
+        channel.position(pos);
+        service.loadAll(new ArrayList<>(state.values()));
+    }
+
+    private static void apply(Map<String, Contact> state, DataInputStream in) throws IOException {
+        byte op = in.readByte();
+        String id = in.readUTF();
+        switch (op) {
+            case OP_ADD:
+                state.put(id, Contact.restore(id, in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF()));
+                break;
+            case OP_DELETE:
+                state.remove(id);
+                break;
+            default:
+                ContactField field = ContactField.values()[in.readByte()];
+                Contact c = state.get(id);
+                if (c != null) {
+                    field.set(c, in.readUTF());
+                }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package contact;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of {@link ContactService#bulkLoad(List)}: how many contacts were
+ * loaded and which input records were rejected and why.
+ */
+public class BulkLoadReport {
+
+    /**
+     * Why an input record was not loaded.
+     */
+    public enum Reason {
+        NULL_RECORD,    // the list entry was null
+        DUPLICATE_ID    // an earlier record has the same contact ID
+    }
+
+    /**
+     * One rejected input record.
+     */
+    public static class Rejection {
+        private final int index;
+        private final String contactID;
+        private final Reason reason;
+
+        Rejection(int index, String contactID, Reason reason) {
+            this.index = index;
+            this.contactID = contactID;
+            this.reason = reason;
+        }
+
+        public int getIndex() {return index;}
+        public String getContactID() {return contactID;}
+        public Reason getReason() {return reason;}
+
+        @Override
+        public String toString() {
+            return "#" + index + " (" + contactID + "): " + reason;
+        }
+    }
+
+    private final List<Rejection> rejected = new ArrayList<>();
+    private int loaded;
+
+    void reject(int index, String contactID, Reason reason) {
+        rejected.add(new Rejection(index, contactID, reason));
+    }
+
+    void setLoaded(int loaded) {
+        this.loaded = loaded;
+    }
+
+    /**
+     * @return number of contacts now in the service
+     */
+    public int getLoadedCount() {return loaded;}
+
+    /**
+     * @return rejected records in input order (read-only)
+     */
+    public List<Rejection> getRejected() {return Collections.unmodifiableList(rejected);}
+
+    /**
+     * @return true if every input record was loaded
+     */
+    public boolean isClean() {return rejected.isEmpty();}
+}
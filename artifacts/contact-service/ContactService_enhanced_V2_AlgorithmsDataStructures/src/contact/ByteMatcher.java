@@ -0,0 +1,83 @@
+package contact;
+
+/**
+ * Finds every occurrence of a byte pattern in a range of a byte array.
+ * Used by {@link ContactScanEngine}; the SIMD version is
+ * {@link VectorByteMatcher}, this class also provides the scalar one.
+ */
+interface ByteMatcher {
+
+    /**
+     * Receives match positions.
+     */
+    interface Hits {
+        void at(int position);
+    }
+
+    /**
+     * Reports every position {@code p} in {@code [from, to - needle.length]}
+     * where {@code needle} occurs, in increasing order.
+     *
+     * @param hay bytes to search
+     * @param from first start position
+     * @param to end of the searchable range (exclusive)
+     * @param needle non-empty pattern
+     * @param hits receives match positions
+     */
+    void scan(byte[] hay, int from, int to, byte[] needle, Hits hits);
+
+    /**
+     * @return short name for reports
+     */
+    String name();
+
+    /**
+     * Returns the SIMD matcher when it was compiled in (it lives in
+     * {@code src-vector}) and the JVM was started with
+     * {@code --add-modules jdk.incubator.vector}, otherwise the scalar one.
+     */
+    static ByteMatcher best() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                // Loaded reflectively so this class links without the incubator module
+                return (ByteMatcher) Class.forName("contact.VectorByteMatcher").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError ex) {
+                // Not compiled in or not linkable: fall back to scalar
+            }
+        }
+        return new Scalar();
+    }
+
+    /**
+     * Compares the rest of the needle at a candidate position.
+     */
+    static boolean matchesAt(byte[] hay, int pos, byte[] needle) {
+        for (int j = needle.length - 1; j > 0; j--) {
+            if (hay[pos + j] != needle[j]) {
+                return false;
+            }
+        }
+        return hay[pos] == needle[0];
+    }
+
+    /**
+     * Portable byte-at-a-time matcher.
+     */
+    final class Scalar implements ByteMatcher {
+        @Override
+        public void scan(byte[] hay, int from, int to, byte[] needle, Hits hits) {
+            byte first = needle[0];
+            int last = to - needle.length;
+            for (int i = from; i <= last; i++) {
+                if (hay[i] == first && matchesAt(hay, i, needle)) {
+                    hits.at(i);
+                }
+            }
+        }
+
+        @Override
+        public String name() {
+            return "scalar";
+        }
+    }
+}
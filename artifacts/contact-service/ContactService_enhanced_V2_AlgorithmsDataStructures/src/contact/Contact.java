@@ -1,5 +1,7 @@
 package contact;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * Represents a single contact with validated personal information.
  * 
@@ -14,6 +16,12 @@ public class Contact {
 	private String phone;
 	private String address;
 	
+	// UTF-8 storage line, built on first save and dropped by every setter
+	private volatile byte[] encoded;
+	
+	// Pool for repeated names; null means every contact keeps the Strings it was given
+	private static volatile StringDictionary dictionary;
+	
 	/**
 	 * Creates a new Contact with validated fields.
 	 *
@@ -29,10 +37,10 @@ public class Contact {
 		this.contactID = contactID;
 
 		if(firstName == null || firstName.isBlank() || firstName.length()>10) {throw new IllegalArgumentException("Invalid first name");}
-		this.firstName = firstName;
+		this.firstName = shared(firstName);
 
 		if(lastName == null || lastName.isBlank() || lastName.length()>10) {throw new IllegalArgumentException("Invalid last name");}
-		this.lastName = lastName;
+		this.lastName = shared(lastName);
 
 		if(phone == null || !phone.matches("\\d{10}")) {throw new IllegalArgumentException("Invalid phone number");}
 		this.phone = phone;
@@ -42,6 +50,63 @@ public class Contact {
 		
 	}
 	
+	/**
+	 * Rebuilds a contact from stored values. Unlike the constructor this
+	 * accepts anything the setters accept (e.g. a name blanked by an update),
+	 * so copies and historical versions round-trip exactly.
+	 *
+	 * @throws IllegalArgumentException if a value fails the setter rules
+	 */
+	static Contact restore(String contactID, String firstName, String lastName, String phone, String address) {
+		Contact c = new Contact(contactID, "x", "x", phone, "x");
+		c.setFirstName(firstName);
+		c.setLastName(lastName);
+		c.setAddress(address);
+		return c;
+	}
+	
+	/**
+	 * Shares first and last names through a dictionary: every Contact built
+	 * or updated from now on stores the pooled instance of its names.
+	 * IDs, phones and whole addresses are nearly unique, so they are kept
+	 * as given.
+	 *
+	 * @param d dictionary to use, or null to stop sharing
+	 */
+	public static void useDictionary(StringDictionary d) {dictionary = d;}
+	
+	/**
+	 * @return the dictionary set by {@link #useDictionary}, or null
+	 */
+	public static StringDictionary getDictionary() {return dictionary;}
+	
+	/**
+	 * Returns this contact as a plain storage line in UTF-8:
+	 * {@code id|first|last|phone|address} and a newline. The bytes are
+	 * cached until the next setter call, so saving an unchanged contact
+	 * again does no encoding. Callers must not modify the array.
+	 *
+	 * @return encoded line
+	 */
+	byte[] encodedLine() {
+		byte[] e = encoded;
+		if (e != null) {
+			return e;
+		}
+		// Locked with the setters so a concurrent update cannot leave a stale line cached
+		synchronized (this) {
+			e = (contactID + '|' + firstName + '|' + lastName + '|' + phone + '|' + address + '\n')
+					.getBytes(StandardCharsets.UTF_8);
+			encoded = e;
+			return e;
+		}
+	}
+	
+	private static String shared(String value) {
+		StringDictionary d = dictionary;
+		return d == null ? value : d.canonicalize(value);
+	}
+	
 	// --- Getters ---
 	public String getContactID() {return contactID;}
 	public String getFirstName() {return firstName;}
@@ -57,7 +122,10 @@ public class Contact {
 	 */
 	public void setFirstName(String firstName) {
 	    if (firstName == null || firstName.length() > 10){throw new IllegalArgumentException("Invalid first name");}
-	    this.firstName = firstName;
+	    synchronized (this) {
+	        this.firstName = shared(firstName);
+	        encoded = null;
+	    }
 	}
 	/**
 	 * Updates the contact's last name.
@@ -67,7 +135,10 @@ public class Contact {
 	 */
 	public void setLastName(String lastName) {
 	    if (lastName == null || lastName.length() > 10){throw new IllegalArgumentException("Invalid last name");}
-	    this.lastName = lastName;
+	    synchronized (this) {
+	        this.lastName = shared(lastName);
+	        encoded = null;
+	    }
 	}
 	/**
 	 * Updates the contact's phone number.
@@ -77,7 +148,10 @@ public class Contact {
 	 */
 	public void setPhone(String phone) {
 	    if (phone == null || !phone.matches("\\d{10}")) {throw new IllegalArgumentException("Invalid phone");}
-	    this.phone = phone;
+	    synchronized (this) {
+	        this.phone = phone;
+	        encoded = null;
+	    }
 	}
 	/**
 	 * Updates the contact's address.
@@ -87,6 +161,9 @@ public class Contact {
 	 */
 	public void setAddress(String address) {
 	    if (address == null || address.length() > 30){throw new IllegalArgumentException("Invalid address");}
-	    this.address = address;
+	    synchronized (this) {
+	        this.address = address;
+	        encoded = null;
+	    }
 	}
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package contact;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A value kept up to date from the stream of changes to a ContactService,
+ * e.g. a count per area code.
+ *
+ * Register one with {@link ContactService#registerAggregate(ContactAggregate)}.
+ * The listener callbacks run under the service lock and should be O(1);
+ * {@link #rebuild(Collection)} is called on registration and on every
+ * {@code loadAll} and may use multiple threads. Readers of the result should
+ * not need the service lock.
+ */
+public interface ContactAggregate extends ContactListener {
+
+    /**
+     * @return unique name used to look the aggregate up
+     */
+    String getName();
+
+    /**
+     * Recomputes the aggregate from scratch.
+     *
+     * @param contacts every contact in the service
+     */
+    void rebuild(Collection<Contact> contacts);
+
+    @Override
+    default void contactsLoaded(List<Contact> contacts) {
+        rebuild(contacts);
+    }
+}
@@ -1,21 +1,46 @@
 package contact;
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Scanner;
 import java.nio.file.Path;
 
 /**
  * Command-line interface for interacting with the ContactService.
+ *
+ * Options: {@code --backend memory|text|binary|embedded|tiered} (default text),
+ * {@code --file <path>}, {@code --replicate <port>} and, for the text
+ * backend, {@code --indexes <field,...>} (e.g. {@code last_name,phone}).
  */
 public class ContactApp {
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+
     public static void main(String[] args) {
         Scanner scanner = new Scanner(System.in);
-        ContactService service = new ContactService();
-		ContactStorage storage = new ContactStorage(Path.of("contacts.txt"));
-		
-		// Load on startup
-		service.loadAll(storage.load());
+		// Share repeated names across contacts, starting with the ones loaded from disk
+		Contact.useDictionary(new StringDictionary());
+		ContactRepository repository = openRepository(args);
+		if (repository instanceof InMemoryContactRepository) {
+			((InMemoryContactRepository) repository).getService().enableAutocomplete();
+			((InMemoryContactRepository) repository).getService().enablePhoneticSearch();
+		}
+
+		// Optional: stream changes to follower processes (java contact.ReplicationFollower <port>)
+		ReplicationPrimary primary = null;
+		int replicatePort = optionIndex(args, "--replicate");
+		if (replicatePort > 0) {
+			if (!(repository instanceof InMemoryContactRepository)) {
+				throw new IllegalArgumentException("--replicate needs the memory, text or binary backend");
+			}
+			primary = new ReplicationPrimary(((InMemoryContactRepository) repository).getService(),
+					Integer.parseInt(args[replicatePort]));
+			System.out.println("Replicating on port " + primary.getPort());
+		}
         boolean running = true;
 
         while (running) {
@@ -31,19 +56,22 @@ public class ContactApp {
 
             switch (choice) {
                 case "1":
-                    handleAdd(scanner, service, storage);
+                    handleAdd(scanner, repository);
                     break;
                 case "2":
-                    handleView(service);
+                    handleView(scanner, repository);
                     break;
 				case "3":
-					handleUpdate(scanner, service, storage);
+					handleUpdate(scanner, repository);
 					break;
 				case "4":
-					handleDelete(scanner, service, storage);
+					handleDelete(scanner, repository);
 					break;
                 case "5":
                     running = false;
+                    StringDictionary names = Contact.getDictionary();
+                    System.out.printf("Shared names: %d, hit rate %.1f%%, about %d KB saved%n",
+                            names.size(), names.getHitRate() * 100, names.getBytesSaved() / 1024);
                     System.out.println("Goodbye.");
                     break;
                 default:
@@ -54,9 +82,96 @@ public class ContactApp {
         }
 
         scanner.close();
+        repository.close();
+        if (primary != null) {
+            primary.close();
+        }
+    }
+
+    /**
+     * Opens the backend named by {@code --backend memory|text|binary|embedded|tiered}
+     * (default text) on the file given by {@code --file}.
+     */
+    private static ContactRepository openRepository(String[] args) {
+        int b = optionIndex(args, "--backend");
+        int f = optionIndex(args, "--file");
+        String backend = b > 0 ? args[b] : "text";
+        switch (backend) {
+            case "memory":
+                return new InMemoryContactRepository();
+            case "text":
+                // Reuses the saved ID filter and indexes when they still match the file
+                int x = optionIndex(args, "--indexes");
+                ContactQuery.Field[] indexed = new ContactQuery.Field[0];
+                if (x > 0) {
+                    String[] names = args[x].split(",");
+                    indexed = new ContactQuery.Field[names.length];
+                    for (int i = 0; i < names.length; i++) {
+                        indexed[i] = ContactQuery.Field.valueOf(names[i].trim().toUpperCase(Locale.ROOT));
+                    }
+                }
+                return new TextFileContactRepository(new ContactStorage(Path.of(f > 0 ? args[f] : "contacts.txt")), indexed);
+            case "binary":
+                return new BinaryFileContactRepository(Path.of(f > 0 ? args[f] : "contacts.log"));
+            case "embedded":
+                return new EmbeddedContactRepository(Path.of(f > 0 ? args[f] : "contacts.db"));
+            case "tiered":
+                return new TieredContactRepository();
+            default:
+                throw new IllegalArgumentException("Unknown backend: " + backend);
+        }
     }
 
-    private static void handleAdd(Scanner scanner, ContactService service, ContactStorage storage) {
+    /**
+     * @return index of the value following {@code name}, or -1 if the option is absent
+     */
+    private static int optionIndex(String[] args, String name) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals(name)) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads a contact ID. When the text is not an exact ID and the backend
+     * supports autocomplete, offers the matching contacts to pick from, or
+     * contacts with a similar-sounding name if nothing starts with the text.
+     *
+     * @return the chosen ID, or the text as typed if nothing was picked
+     */
+    private static String promptForId(Scanner scanner, ContactRepository repository, String prompt) {
+        System.out.print(prompt);
+        String typed = scanner.nextLine().trim();
+        if (!(repository instanceof InMemoryContactRepository)) {
+            return typed;
+        }
+        ContactService service = ((InMemoryContactRepository) repository).getService();
+        if (typed.isEmpty() || service.containsContact(typed)) {
+            return typed;
+        }
+        List<Contact> matches = service.autocomplete(typed, 9);
+        if (matches.isEmpty()) {
+            matches = service.soundsLike(typed, 9); // e.g. a surname heard over the phone
+        }
+        if (matches.isEmpty()) {
+            return typed;
+        }
+        System.out.println("Matching contacts:");
+        for (int i = 0; i < matches.size(); i++) {
+            Contact c = matches.get(i);
+            System.out.println((i + 1) + ". " + c.getContactID() + " | " + c.getFirstName() + " " + c.getLastName());
+        }
+        System.out.print("Select a contact (Enter to keep \"" + typed + "\"): ");
+        String pick = scanner.nextLine().trim();
+        if (pick.matches("[1-9]") && Integer.parseInt(pick) <= matches.size()) {
+            return matches.get(Integer.parseInt(pick) - 1).getContactID();
+        }
+        return typed;
+    }
+
+    private static void handleAdd(Scanner scanner, ContactRepository repository) {
         try {
             System.out.print("Contact ID (max 10): ");
             String id = scanner.nextLine().trim();
@@ -74,8 +189,7 @@ public class ContactApp {
             String address = scanner.nextLine().trim();
 
             Contact contact = new Contact(id, first, last, phone, address);
-            service.addContact(contact);
-			storage.save(service.getAllContacts());
+            repository.add(contact);
 
             System.out.println("Contact added.");
         } catch (IllegalArgumentException ex) {
@@ -83,29 +197,114 @@ public class ContactApp {
         }
     }
 
-    private static void handleView(ContactService service) {
-        List<Contact> contacts = service.getAllContacts();
-
-        if (contacts.isEmpty()) {
+    private static void handleView(Scanner scanner, ContactRepository repository) {
+        int total = repository.size();
+        if (total == 0) {
             System.out.println("No contacts found.");
             return;
         }
 
-        System.out.println("Contacts:");
-        for (Contact c : contacts) {
-            System.out.println("- ID: " + c.getContactID()
-                    + " | " + c.getFirstName() + " " + c.getLastName()
-                    + " | Phone: " + c.getPhone()
-                    + " | Street Address: " + c.getAddress());
+        System.out.println("Sort by: 1. ID  2. First Name  3. Last Name  4. Phone  5. Street Address");
+        System.out.print("Select an option (Enter for ID): ");
+        ContactQuery.Field sortBy = null;
+        boolean descending = false;
+        String sortChoice = scanner.nextLine().trim();
+        if (sortChoice.matches("[1-5]")) {
+            sortBy = ContactQuery.Field.values()[Integer.parseInt(sortChoice) - 1];
+            System.out.print("Descending? (y/N): ");
+            descending = scanner.nextLine().trim().equalsIgnoreCase("y");
+        } else if (!sortChoice.isEmpty()) {
+            System.out.println("Invalid choice, showing by ID.");
+        }
+
+        System.out.print("Page size (Enter for " + DEFAULT_PAGE_SIZE + "): ");
+        int pageSize = DEFAULT_PAGE_SIZE;
+        String sizeChoice = scanner.nextLine().trim();
+        if (sizeChoice.matches("[0-9]{1,4}") && Integer.parseInt(sizeChoice) > 0) {
+            pageSize = Integer.parseInt(sizeChoice);
+        } else if (!sizeChoice.isEmpty()) {
+            System.out.println("Invalid page size, using " + DEFAULT_PAGE_SIZE + ".");
+        }
+
+        // Not closed: closing would close System.out
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16));
+        StringBuilder line = new StringBuilder(96);
+        int pages = (total + pageSize - 1) / pageSize;
+        int page = 0;
+        ContactQuery.Field order = sortBy == null ? ContactQuery.Field.ID : sortBy;
+        // starts.get(p): sort key and ID of the last row before page p, or null for the first page
+        List<String[]> starts = new ArrayList<>();
+        starts.add(null);
+
+        while (true) {
+            // Keyset paging: a page asks only for the pageSize rows after the
+            // previous page's last row, so any page, however deep, costs one
+            // bounded heap of pageSize rows. Even "unsorted" paging is ordered
+            // by ID: a hash map has no stable order for pages to agree on.
+            String[] start = starts.get(page);
+            ContactQuery query = new ContactQuery(start == null ? ContactPredicate.all()
+                    : after(order, descending, start[0], start[1]))
+                    .limit(pageSize)
+                    .orderBy(order, descending);
+            List<Contact> rows = repository.query(query);
+
+            out.print("Contacts (page " + (page + 1) + " of " + pages);
+            if (sortBy != null) {
+                out.print(", by " + sortBy + (descending ? " desc" : " asc"));
+            }
+            out.println("):");
+            for (Contact c : rows) {
+                line.setLength(0);
+                line.append("- ID: ").append(c.getContactID())
+                    .append(" | ").append(c.getFirstName()).append(' ').append(c.getLastName())
+                    .append(" | Phone: ").append(c.getPhone())
+                    .append(" | Street Address: ").append(c.getAddress());
+                out.println(line);
+            }
+            out.print("[n]ext  [p]revious  [q]uit: ");
+            out.flush();
+
+            String nav = scanner.nextLine().trim().toLowerCase(Locale.ROOT);
+            if (nav.equals("n") && page + 1 < pages && !rows.isEmpty()) {
+                Contact last = rows.get(rows.size() - 1);
+                String[] next = {order.get(last), last.getContactID()};
+                if (starts.size() == page + 1) {
+                    starts.add(next);
+                } else {
+                    starts.set(page + 1, next); // rows may have changed since we were last here
+                }
+                page++;
+            } else if (nav.equals("p") && page > 0) {
+                page--;
+            } else if (nav.equals("q") || nav.isEmpty()) {
+                return;
+            }
+        }
+    }
+	
+    /**
+     * Rows that come after (key, id) in the page order: a later sort key, or
+     * the same key and a later ID. {@code key + '\0'} is the smallest string
+     * above key, which turns the exclusive bound into a range start.
+     */
+    private static ContactPredicate after(ContactQuery.Field field, boolean descending, String key, String id) {
+        ContactPredicate pastId = descending
+                ? ContactPredicate.range(ContactQuery.Field.ID, null, id)
+                : ContactPredicate.range(ContactQuery.Field.ID, id + '\0', null);
+        if (field == ContactQuery.Field.ID) {
+            return pastId;
         }
+        ContactPredicate pastKey = descending
+                ? ContactPredicate.range(field, null, key)
+                : ContactPredicate.range(field, key + '\0', null);
+        return ContactPredicate.or(pastKey, ContactPredicate.and(ContactPredicate.equalTo(field, key), pastId));
     }
 	
-	private static void handleUpdate(Scanner scanner, ContactService service, ContactStorage storage) {
+	private static void handleUpdate(Scanner scanner, ContactRepository repository) {
 		try {
-			System.out.print("Enter Contact ID to update: ");
-			String id = scanner.nextLine().trim();
+			String id = promptForId(scanner, repository, "Enter Contact ID (or the start of an ID or name) to update: ");
 
-			Contact c = service.getContactById(id);
+			Contact c = repository.get(id);
 
 			System.out.println("Update this contact:");
 			System.out.println("- ID: " + c.getContactID()
@@ -128,29 +327,25 @@ public class ContactApp {
                 case "1":
 					System.out.print("Enter the new first name (max 10): ");
 					choice = scanner.nextLine().trim();
-					service.updateFirstName(id, choice);
-					storage.save(service.getAllContacts());
+					repository.update(id, ContactField.FIRST_NAME, choice);
 					System.out.print("Contact first name updated.");
                     break;
                 case "2":
 					System.out.print("Enter the new last name (max 10): ");
 					choice = scanner.nextLine().trim();
-					service.updateLastName(id, choice);
-					storage.save(service.getAllContacts());
+					repository.update(id, ContactField.LAST_NAME, choice);
 					System.out.print("Contact last name updated.");
                     break;
 				case "3":
 					System.out.print("Enter the new phone number (10 digits): ");
 					choice = scanner.nextLine().trim();
-					service.updatePhone(id, choice);
-					storage.save(service.getAllContacts());
+					repository.update(id, ContactField.PHONE, choice);
 					System.out.print("Contact phone number updated.");
 					break;
 				case "4":
 					System.out.print("Enter the new street address (max 30): ");
 					choice = scanner.nextLine().trim();
-					service.updateAddress(id, choice);
-					storage.save(service.getAllContacts());
+					repository.update(id, ContactField.ADDRESS, choice);
 					System.out.print("Contact street address updated.");
 					break;
                 case "5":
@@ -167,12 +362,11 @@ public class ContactApp {
 		}
 	}
 	
-	private static void handleDelete(Scanner scanner, ContactService service, ContactStorage storage) {
+	private static void handleDelete(Scanner scanner, ContactRepository repository) {
 		try {
-			System.out.print("Enter Contact ID to delete: ");
-			String id = scanner.nextLine().trim();
+			String id = promptForId(scanner, repository, "Enter Contact ID (or the start of an ID or name) to delete: ");
 
-			Contact c = service.getContactById(id);
+			Contact c = repository.get(id);
 
 			System.out.println("Delete this contact?");
 			System.out.println("- ID: " + c.getContactID()
@@ -185,8 +379,7 @@ public class ContactApp {
 				String confirm = scanner.nextLine().trim().toLowerCase();
 
 				if (confirm.equals("y")) {
-					service.deleteContact(id);
-					storage.save(service.getAllContacts());
+					repository.delete(id);
 					System.out.println("Contact deleted.");
 					return;
 				} else if (confirm.equals("n")) {
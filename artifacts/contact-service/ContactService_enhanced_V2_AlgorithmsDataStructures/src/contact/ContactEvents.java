@@ -0,0 +1,182 @@
+package contact;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JDK Flight Recorder events for {@link ContactService} and
+ * {@link ContactStorage} calls.
+ *
+ * Each call creates an event, begins it, and commits it when done. While
+ * an event type is disabled, begin and commit do nothing and the JIT
+ * removes the allocation, so the instrumentation costs next to nothing.
+ * Single-contact events default to a 1 ms threshold, so a recording only
+ * holds the slow calls. Load and save events are always recorded while
+ * enabled. {@link TieredContactRepository} adds a periodic event with its
+ * tier sizes. The {@code contact-diagnostics.jfc} profile next to this file
+ * turns all of them on together with GC, lock and file I/O events.
+ *
+ * <pre>
+ * java -XX:StartFlightRecording:settings=contact-diagnostics.jfc,filename=contacts.jfr contact.ContactApp
+ * </pre>
+ */
+final class ContactEvents {
+
+    private ContactEvents() {}
+
+    /**
+     * Fields shared by every contact event: whether the call succeeded
+     * and, if not, the message of the exception it threw.
+     */
+    @Category("Contact Service")
+    abstract static class Outcome extends Event {
+        @Label("Succeeded")
+        boolean succeeded = true;
+
+        @Label("Failure")
+        @Description("Message of the exception thrown, e.g. a validation failure")
+        String failure;
+
+        void fail(RuntimeException ex) {
+            succeeded = false;
+            failure = ex.getMessage();
+        }
+    }
+
+    @Name("contact.Add")
+    @Label("Add Contact")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static final class Add extends Outcome {
+        @Label("Contact ID")
+        String id;
+    }
+
+    @Name("contact.Delete")
+    @Label("Delete Contact")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static final class Delete extends Outcome {
+        @Label("Contact ID")
+        String id;
+    }
+
+    @Name("contact.Update")
+    @Label("Update Contact")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static final class Update extends Outcome {
+        @Label("Contact ID")
+        String id;
+
+        @Label("Field")
+        String field;
+    }
+
+    @Name("contact.Lookup")
+    @Label("Look Up Contact")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static final class Lookup extends Outcome {
+        @Label("Contact ID")
+        String id;
+    }
+
+    @Name("contact.LoadAll")
+    @Label("Load All Contacts")
+    @Description("ContactService.loadAll or bulkLoad replacing the whole data set")
+    static final class LoadAll extends Outcome {
+        @Label("Records")
+        int records;
+
+        @Label("Loaded")
+        int loaded;
+
+        @Label("Rejected")
+        int rejected;
+    }
+
+    @Name("contact.StorageLoad")
+    @Label("Load Contacts File")
+    @Category({"Contact Service", "Storage"})
+    static final class StorageLoad extends Outcome {
+        @Label("Path")
+        String path;
+
+        @Label("Checksummed")
+        boolean checksummed;
+
+        @Label("Bytes Read")
+        @DataAmount
+        long bytes;
+
+        @Label("Records")
+        int records;
+
+        @Label("Skipped Lines")
+        int skipped;
+
+        @Label("Truncated Bytes")
+        @DataAmount
+        long truncatedBytes;
+    }
+
+    @Name("contact.StorageSave")
+    @Label("Save Contacts File")
+    @Category({"Contact Service", "Storage"})
+    static final class StorageSave extends Outcome {
+        @Label("Path")
+        String path;
+
+        @Label("Checksummed")
+        boolean checksummed;
+
+        @Label("Bytes Written")
+        @DataAmount
+        long bytes;
+
+        @Label("Records")
+        long records;
+    }
+
+    @Name("contact.Tiering")
+    @Label("Contact Tiering")
+    @Description("Tier sizes and cumulative counters of a TieredContactRepository")
+    @Category({"Contact Service", "Storage"})
+    @Period("1 s")
+    @StackTrace(false)
+    static final class Tiering extends Event {
+        @Label("Hot Contacts")
+        int hotContacts;
+
+        @Label("Cold Contacts")
+        int coldContacts;
+
+        @Label("Cold Bytes")
+        @DataAmount
+        long coldBytes;
+
+        @Label("Off-Heap Bytes")
+        @DataAmount
+        long offHeapBytes;
+
+        @Label("Hot Hits")
+        long hotHits;
+
+        @Label("Cold Hits")
+        long coldHits;
+
+        @Label("Promotions")
+        long promotions;
+
+        @Label("Demotions")
+        long demotions;
+    }
+}
@@ -0,0 +1,45 @@
+package contact;
+
+/**
+ * The updatable fields of a Contact.
+ *
+ * Used wherever code needs to refer to a field by value, e.g. mutation
+ * events, replication and queries.
+ */
+public enum ContactField {
+    FIRST_NAME,
+    LAST_NAME,
+    PHONE,
+    ADDRESS;
+
+    /**
+     * Reads this field from a contact.
+     *
+     * @param c contact to read
+     * @return current field value
+     */
+    public String get(Contact c) {
+        switch (this) {
+            case FIRST_NAME: return c.getFirstName();
+            case LAST_NAME:  return c.getLastName();
+            case PHONE:      return c.getPhone();
+            default:         return c.getAddress();
+        }
+    }
+
+    /**
+     * Writes this field on a contact using the validating setter.
+     *
+     * @param c contact to update
+     * @param value new value
+     * @throws IllegalArgumentException if the value is invalid
+     */
+    public void set(Contact c, String value) {
+        switch (this) {
+            case FIRST_NAME: c.setFirstName(value); break;
+            case LAST_NAME:  c.setLastName(value); break;
+            case PHONE:      c.setPhone(value); break;
+            default:         c.setAddress(value); break;
+        }
+    }
+}
@@ -0,0 +1,661 @@
+package contact;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.zip.CRC32C;
+
+/**
+ * Compares or merges two contact files by contact ID without loading either
+ * one into memory.
+ *
+ * Each input is cut into runs of at most {@code runSize} records, each run is
+ * sorted by ID and spilled to a temporary file, and the runs are merged back
+ * with a k-way heap so the file arrives as an ID-ordered stream. At most
+ * {@value #MAX_FAN_IN} runs are open at once; when there are more, groups of
+ * runs are first merged into longer ones, pass by pass. A single merge-join
+ * pass over the two streams then writes the differences or the merged file.
+ * Memory use is bounded by the run size, not by the file sizes.
+ *
+ * Plain and checksummed files are both accepted. Records are read under the
+ * same rules as the Contact setters, so a contact whose name or address was
+ * cleared by an update is kept; malformed, damaged or out-of-sequence records
+ * are skipped and counted. When an ID appears more than once in a file the
+ * last occurrence wins.
+ *
+ * Diff output, one line per change, left being the older side:
+ * <pre>
+ * +|id|first|last|phone|address    only in right (added)
+ * -|id|first|last|phone|address    only in left (deleted)
+ * ~|id|FIELD|left value|right value  one line per field that differs
+ * </pre>
+ */
+public class ContactFileDiff {
+
+    /**
+     * How to pick a value when both files have a contact but disagree on a field.
+     */
+    public enum MergeRule {
+        PREFER_LEFT,
+        PREFER_RIGHT,
+        PREFER_NON_BLANK,   // the side with a non-blank value, left on a tie
+        PREFER_LONGER       // the longer value, left on a tie
+    }
+
+    public static final int DEFAULT_RUN_SIZE = 250_000;
+
+    /** Most sorted runs read at once per input, which bounds open files. */
+    static final int MAX_FAN_IN = 64;
+
+    private static final Comparator<Contact> BY_ID = Comparator.comparing(Contact::getContactID);
+
+    private final int runSize;
+    private final Path tempDir;
+    private final Map<ContactField, MergeRule> rules = new EnumMap<>(ContactField.class);
+
+    /**
+     * Diff tool with the default run size, spilling to the system temp directory.
+     */
+    public ContactFileDiff() {
+        this(DEFAULT_RUN_SIZE, null);
+    }
+
+    /**
+     * @param runSize maximum records held in memory per input while sorting
+     * @param tempDir directory for sorted runs, or null for the system default
+     * @throws IllegalArgumentException if runSize is not positive
+     */
+    public ContactFileDiff(int runSize, Path tempDir) {
+        if (runSize <= 0) {
+            throw new IllegalArgumentException("runSize must be positive");
+        }
+        this.runSize = runSize;
+        this.tempDir = tempDir;
+        setRule(MergeRule.PREFER_LEFT);
+    }
+
+    /**
+     * Sets the conflict rule for every field.
+     *
+     * @param rule rule to use
+     * @return this tool
+     * @throws IllegalArgumentException if rule is null
+     */
+    public ContactFileDiff setRule(MergeRule rule) {
+        for (ContactField f : ContactField.values()) {
+            setRule(f, rule);
+        }
+        return this;
+    }
+
+    /**
+     * Sets the conflict rule for one field.
+     *
+     * @param field field the rule applies to
+     * @param rule rule to use
+     * @return this tool
+     * @throws IllegalArgumentException if field or rule is null
+     */
+    public ContactFileDiff setRule(ContactField field, MergeRule rule) {
+        if (field == null || rule == null) {
+            throw new IllegalArgumentException("field and rule cannot be null");
+        }
+        rules.put(field, rule);
+        return this;
+    }
+
+    public MergeRule getRule(ContactField field) {return rules.get(field);}
+
+    /**
+     * Writes the changes that turn {@code left} into {@code right}.
+     *
+     * @param left older contacts file
+     * @param right newer contacts file
+     * @param out diff file to write (overwritten)
+     * @return counts of what was found
+     * @throws IllegalArgumentException if any path is null
+     * @throws IllegalStateException if an I/O error occurs
+     */
+    public Summary diff(Path left, Path right, Path out) {
+        if (out == null) {
+            throw new IllegalArgumentException("out cannot be null");
+        }
+        Summary summary = new Summary();
+        try (BufferedWriter w = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+            StringBuilder line = new StringBuilder(96);
+            join(left, right, summary, (l, r) -> {
+                line.setLength(0);
+                if (r == null) {
+                    appendContact(line.append("-|"), l);
+                } else if (l == null) {
+                    appendContact(line.append("+|"), r);
+                } else {
+                    for (ContactField f : ContactField.values()) {
+                        String lv = f.get(l);
+                        String rv = f.get(r);
+                        if (!lv.equals(rv)) {
+                            line.append("~|").append(l.getContactID()).append('|').append(f)
+                                .append('|').append(lv).append('|').append(rv).append('\n');
+                        }
+                    }
+                }
+                w.append(line);
+            });
+        } catch (IOException | UncheckedIOException ex) {
+            throw new IllegalStateException("Failed to write diff to file: " + out, ex);
+        }
+        return summary;
+    }
+
+    /**
+     * Writes the union of both files to {@code out}, resolving each differing
+     * field with its {@link MergeRule}. Output is in ID order and uses the
+     * format of {@code out} (plain or checksummed).
+     *
+     * @param left first contacts file
+     * @param right second contacts file
+     * @param out storage to write (overwritten)
+     * @param conflictLog file to receive one {@code !|id|FIELD|left|right|chosen}
+     *        line per resolved conflict, or null
+     * @return counts of what was found
+     * @throws IllegalArgumentException if left, right or out is null
+     * @throws IllegalStateException if an I/O error occurs
+     */
+    public Summary merge(Path left, Path right, ContactStorage out, Path conflictLog) {
+        if (out == null) {
+            throw new IllegalArgumentException("out cannot be null");
+        }
+        Summary summary = new Summary();
+        out.fileReplaced();
+        try (BufferedWriter w = Files.newBufferedWriter(out.getFilePath(), StandardCharsets.UTF_8);
+             BufferedWriter log = conflictLog == null ? null : Files.newBufferedWriter(conflictLog, StandardCharsets.UTF_8)) {
+            if (out.isChecksummed()) {
+                w.write(ContactStorage.CHECKSUM_HEADER);
+                w.write('\n');
+            }
+            StringBuilder line = new StringBuilder(96);
+            long[] seq = {0};
+            join(left, right, summary, (l, r) -> {
+                Contact merged = l == null ? r : r == null ? l : resolve(l, r, log, line);
+                line.setLength(0);
+                out.appendRecord(line, ++seq[0], merged);
+                w.append(line);
+            });
+        } catch (IOException | UncheckedIOException ex) {
+            throw new IllegalStateException("Failed to write merged contacts to file: " + out.getFilePath(), ex);
+        }
+        return summary;
+    }
+
+    /**
+     * Counts from one diff or merge.
+     */
+    public static class Summary {
+        private long leftRecords;
+        private long rightRecords;
+        private long added;
+        private long deleted;
+        private long changed;
+        private long changedFields;
+        private long unchanged;
+        private long skipped;
+        private long duplicates;
+        private int runs;
+
+        public long getLeftRecords() {return leftRecords;}
+        public long getRightRecords() {return rightRecords;}
+        public long getAdded() {return added;}
+        public long getDeleted() {return deleted;}
+        public long getChanged() {return changed;}
+
+        /**
+         * @return fields that differ between the two sides; in a merge each is a resolved conflict
+         */
+        public long getChangedFields() {return changedFields;}
+        public long getUnchanged() {return unchanged;}
+
+        /**
+         * @return records in either input that failed parsing, checksum or validation
+         */
+        public long getSkipped() {return skipped;}
+
+        /**
+         * @return records superseded by a later record with the same ID in the same file
+         */
+        public long getDuplicates() {return duplicates;}
+
+        /**
+         * @return sorted runs spilled to disk across both inputs
+         */
+        public int getRuns() {return runs;}
+
+        @Override
+        public String toString() {
+            return "left=" + leftRecords + " right=" + rightRecords + " added=" + added + " deleted=" + deleted
+                    + " changed=" + changed + " (" + changedFields + " fields) unchanged=" + unchanged
+                    + " skipped=" + skipped + " duplicates=" + duplicates + " runs=" + runs;
+        }
+    }
+
+    /**
+     * Usage: {@code java contact.ContactFileDiff diff <left> <right> <out>}
+     * or {@code java contact.ContactFileDiff merge <left> <right> <out> [--checksummed]
+     * [--conflicts <file>] [--rule <RULE>] [--rule <FIELD>=<RULE>] [--run-size <n>]}
+     */
+    public static void main(String[] args) {
+        if (args.length < 4 || !(args[0].equals("diff") || args[0].equals("merge"))) {
+            System.out.println("Usage: ContactFileDiff diff|merge <left> <right> <out> [--checksummed]"
+                    + " [--conflicts <file>] [--rule [FIELD=]RULE] [--run-size <n>]");
+            return;
+        }
+        int runSize = DEFAULT_RUN_SIZE;
+        boolean checksummed = false;
+        Path conflicts = null;
+        List<String> ruleArgs = new ArrayList<>();
+        for (int i = 4; i < args.length; i++) {
+            switch (args[i]) {
+                case "--checksummed": checksummed = true; break;
+                case "--conflicts":   conflicts = Path.of(args[++i]); break;
+                case "--rule":        ruleArgs.add(args[++i]); break;
+                case "--run-size":    runSize = Integer.parseInt(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        ContactFileDiff tool = new ContactFileDiff(runSize, null);
+        for (String r : ruleArgs) {
+            int eq = r.indexOf('=');
+            if (eq < 0) {
+                tool.setRule(MergeRule.valueOf(r));
+            } else {
+                tool.setRule(ContactField.valueOf(r.substring(0, eq)), MergeRule.valueOf(r.substring(eq + 1)));
+            }
+        }
+
+        Path left = Path.of(args[1]);
+        Path right = Path.of(args[2]);
+        Summary s = args[0].equals("diff")
+                ? tool.diff(left, right, Path.of(args[3]))
+                : tool.merge(left, right, new ContactStorage(Path.of(args[3]), checksummed), conflicts);
+        System.out.println(s);
+    }
+
+    // ---- merge-join ----
+
+    private interface JoinRow {
+        /** Called once per ID in ascending order; exactly one side may be null. */
+        void accept(Contact left, Contact right) throws IOException;
+    }
+
+    private void join(Path left, Path right, Summary summary, JoinRow row) throws IOException {
+        if (left == null || right == null) {
+            throw new IllegalArgumentException("left and right cannot be null");
+        }
+        try (SortedInput l = new SortedInput(left, summary); SortedInput r = new SortedInput(right, summary)) {
+            Contact a = l.next();
+            Contact b = r.next();
+            while (a != null || b != null) {
+                int cmp = a == null ? 1 : b == null ? -1 : a.getContactID().compareTo(b.getContactID());
+                if (cmp < 0) {
+                    summary.deleted++;
+                    row.accept(a, null);
+                    a = l.next();
+                } else if (cmp > 0) {
+                    summary.added++;
+                    row.accept(null, b);
+                    b = r.next();
+                } else {
+                    int diffs = 0;
+                    for (ContactField f : ContactField.values()) {
+                        if (!f.get(a).equals(f.get(b))) {
+                            diffs++;
+                        }
+                    }
+                    if (diffs == 0) {
+                        summary.unchanged++;
+                    } else {
+                        summary.changed++;
+                        summary.changedFields += diffs;
+                    }
+                    row.accept(a, b);
+                    a = l.next();
+                    b = r.next();
+                }
+            }
+            summary.leftRecords = l.emitted;
+            summary.rightRecords = r.emitted;
+        }
+    }
+
+    private Contact resolve(Contact l, Contact r, BufferedWriter log, StringBuilder line) throws IOException {
+        String[] v = new String[ContactField.values().length];
+        for (ContactField f : ContactField.values()) {
+            String lv = f.get(l);
+            String rv = f.get(r);
+            v[f.ordinal()] = lv;
+            if (lv.equals(rv)) {
+                continue;
+            }
+            String chosen;
+            switch (rules.get(f)) {
+                case PREFER_RIGHT:     chosen = rv; break;
+                case PREFER_NON_BLANK: chosen = lv.isBlank() && !rv.isBlank() ? rv : lv; break;
+                case PREFER_LONGER:    chosen = rv.length() > lv.length() ? rv : lv; break;
+                default:               chosen = lv;
+            }
+            v[f.ordinal()] = chosen;
+            if (log != null) {
+                line.setLength(0);
+                line.append("!|").append(l.getContactID()).append('|').append(f).append('|').append(lv)
+                    .append('|').append(rv).append('|').append(chosen).append('\n');
+                log.append(line);
+            }
+        }
+        return Contact.restore(l.getContactID(), v[ContactField.FIRST_NAME.ordinal()],
+                v[ContactField.LAST_NAME.ordinal()], v[ContactField.PHONE.ordinal()], v[ContactField.ADDRESS.ordinal()]);
+    }
+
+    // ---- external sort ----
+
+    /**
+     * One input file as a stream of contacts in ID order with duplicates
+     * collapsed. Small files are sorted in memory and never touch disk.
+     */
+    private final class SortedInput implements Closeable {
+        private final Summary summary;
+        private final List<Path> runFiles = new ArrayList<>(); // current runs, in file order
+        private final List<Path> tempFiles = new ArrayList<>(); // everything created, for cleanup
+        private final PriorityQueue<Run> heap = new PriorityQueue<>(
+                Comparator.comparing((Run run) -> run.head.getContactID()).thenComparingInt(run -> run.index));
+        private Path runDir;
+        private List<Contact> memory;
+        private int memoryPos;
+        private Contact pending;
+        long emitted;
+
+        SortedInput(Path file, Summary summary) throws IOException {
+            this.summary = summary;
+            try (RecordReader in = new RecordReader(file)) {
+                List<Contact> chunk = new ArrayList<>(Math.min(runSize, 1 << 16));
+                for (Contact c = in.next(); c != null; c = in.next()) {
+                    chunk.add(c);
+                    if (chunk.size() == runSize) {
+                        spill(chunk);
+                        chunk.clear();
+                    }
+                }
+                summary.skipped += in.skipped;
+                chunk.sort(BY_ID); // stable, so later duplicates stay later
+                if (runFiles.isEmpty()) {
+                    memory = chunk;
+                } else {
+                    if (!chunk.isEmpty()) {
+                        spill(chunk);
+                    }
+                    while (runFiles.size() > MAX_FAN_IN) {
+                        mergePass();
+                    }
+                    openRuns(runFiles);
+                }
+            } catch (IOException | RuntimeException ex) {
+                close();
+                throw ex;
+            }
+            pending = pull();
+        }
+
+        /**
+         * @return next contact in ID order, the last one for a repeated ID, or null at the end
+         */
+        Contact next() throws IOException {
+            Contact current = pending;
+            if (current == null) {
+                return null;
+            }
+            Contact following = pull();
+            while (following != null && following.getContactID().equals(current.getContactID())) {
+                summary.duplicates++;
+                current = following;
+                following = pull();
+            }
+            pending = following;
+            emitted++;
+            return current;
+        }
+
+        private Contact pull() throws IOException {
+            if (memory != null) {
+                return memoryPos < memory.size() ? memory.get(memoryPos++) : null;
+            }
+            Run run = heap.poll();
+            if (run == null) {
+                return null;
+            }
+            Contact c = run.head;
+            if (run.advance()) {
+                heap.add(run);
+            }
+            return c;
+        }
+
+        private void spill(List<Contact> chunk) throws IOException {
+            chunk.sort(BY_ID);
+            Path runFile = newRunFile();
+            runFiles.add(runFile);
+            summary.runs++;
+            try (BufferedWriter w = Files.newBufferedWriter(runFile, StandardCharsets.UTF_8)) {
+                StringBuilder line = new StringBuilder(96);
+                for (Contact c : chunk) {
+                    line.setLength(0);
+                    appendContact(line, c);
+                    w.append(line);
+                }
+            }
+        }
+
+        /**
+         * Merges each group of {@link #MAX_FAN_IN} consecutive runs into one.
+         * Groups keep their order and the heap breaks ties by run index, so
+         * a later duplicate of an ID still comes out after the earlier one.
+         */
+        private void mergePass() throws IOException {
+            List<Path> merged = new ArrayList<>();
+            for (int from = 0; from < runFiles.size(); from += MAX_FAN_IN) {
+                List<Path> group = runFiles.subList(from, Math.min(from + MAX_FAN_IN, runFiles.size()));
+                if (group.size() == 1) {
+                    merged.add(group.get(0));
+                    continue;
+                }
+                Path runFile = newRunFile();
+                openRuns(group);
+                try (BufferedWriter w = Files.newBufferedWriter(runFile, StandardCharsets.UTF_8)) {
+                    StringBuilder line = new StringBuilder(96);
+                    for (Run run = heap.poll(); run != null; run = heap.poll()) {
+                        line.setLength(0);
+                        appendContact(line, run.head);
+                        w.append(line);
+                        if (run.advance()) {
+                            heap.add(run);
+                        }
+                    }
+                }
+                for (Path p : group) {
+                    Files.delete(p);
+                }
+                merged.add(runFile);
+            }
+            runFiles.clear();
+            runFiles.addAll(merged);
+        }
+
+        private void openRuns(List<Path> files) throws IOException {
+            for (int i = 0; i < files.size(); i++) {
+                Run run = new Run(Files.newBufferedReader(files.get(i), StandardCharsets.UTF_8), i);
+                if (run.advance()) {
+                    heap.add(run);
+                }
+            }
+        }
+
+        private Path newRunFile() throws IOException {
+            if (runDir == null) {
+                runDir = tempDir == null ? Files.createTempDirectory("contact-diff")
+                                         : Files.createTempDirectory(tempDir, "contact-diff");
+            }
+            Path runFile = runDir.resolve("run-" + tempFiles.size());
+            tempFiles.add(runFile);
+            return runFile;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (Run run : heap) {
+                run.in.close();
+            }
+            heap.clear();
+            for (Path p : tempFiles) {
+                Files.deleteIfExists(p);
+            }
+            if (runDir != null) {
+                Files.deleteIfExists(runDir);
+            }
+        }
+    }
+
+    private static final class Run {
+        final BufferedReader in;
+        final int index;
+        Contact head;
+
+        Run(BufferedReader in, int index) {
+            this.in = in;
+            this.index = index;
+        }
+
+        /** Reads the next record; closes the file and returns false at the end. */
+        boolean advance() throws IOException {
+            String line = in.readLine();
+            if (line == null) {
+                in.close();
+                return false;
+            }
+            String[] p = line.split("\\|", -1);
+            head = Contact.restore(p[0], p[1], p[2], p[3], p[4]); // already checked on the way in
+            return true;
+        }
+    }
+
+    /**
+     * Streams records out of a contacts file in file order. Framing, checksum
+     * and sequence checks match {@link ContactStorage#load()}; field values
+     * only have to pass the setter rules, so blanked names and addresses
+     * reach the merge rules.
+     */
+    private static final class RecordReader implements Closeable {
+        private final BufferedReader in;
+        private final CRC32C crc = new CRC32C();
+        private boolean checksummed;
+        private String firstLine;
+        private long lastSeq;
+        long skipped;
+
+        RecordReader(Path file) throws IOException {
+            if (!Files.exists(file)) {
+                in = new BufferedReader(new StringReader(""));
+                return;
+            }
+            in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+            firstLine = in.readLine();
+            if (ContactStorage.CHECKSUM_HEADER.equals(firstLine)) {
+                checksummed = true;
+                firstLine = null;
+            }
+        }
+
+        Contact next() throws IOException {
+            while (true) {
+                String line = firstLine != null ? firstLine : in.readLine();
+                firstLine = null;
+                if (line == null) {
+                    return null;
+                }
+                if (line.isBlank()) {
+                    continue;
+                }
+                Contact c = checksummed ? parseChecksummed(line) : parse(line.split("\\|", -1), 0);
+                if (c != null) {
+                    return c;
+                }
+                skipped++;
+            }
+        }
+
+        private Contact parseChecksummed(String line) {
+            int sep = line.lastIndexOf('|');
+            if (sep < 0 || line.length() - sep - 1 != 8) {
+                return null;
+            }
+            byte[] body = line.substring(0, sep).getBytes(StandardCharsets.UTF_8);
+            crc.reset();
+            crc.update(body, 0, body.length);
+            long stored;
+            try {
+                stored = Long.parseLong(line.substring(sep + 1), 16);
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+            if (stored != crc.getValue()) {
+                return null;
+            }
+            String[] parts = line.substring(0, sep).split("\\|", -1);
+            if (parts.length != 6) {
+                return null;
+            }
+            long seq;
+            try {
+                seq = Long.parseLong(parts[0]);
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+            if (seq <= lastSeq) {
+                return null;
+            }
+            lastSeq = seq;
+            return parse(parts, 1);
+        }
+
+        private static Contact parse(String[] parts, int from) {
+            if (parts.length - from != 5) {
+                return null;
+            }
+            try {
+                return Contact.restore(parts[from], parts[from + 1], parts[from + 2], parts[from + 3], parts[from + 4]);
+            } catch (IllegalArgumentException ex) {
+                return null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static void appendContact(StringBuilder sb, Contact c) {
+        sb.append(c.getContactID()).append('|').append(c.getFirstName()).append('|')
+          .append(c.getLastName()).append('|').append(c.getPhone()).append('|')
+          .append(c.getAddress()).append('\n');
+    }
+}
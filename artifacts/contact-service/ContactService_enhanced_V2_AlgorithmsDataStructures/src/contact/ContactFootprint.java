@@ -0,0 +1,167 @@
+package contact;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntFunction;
+
+/**
+ * Memory-footprint report comparing {@link Contact} with {@link PackedContact},
+ * and with Contact when names are shared through a {@link StringDictionary}.
+ *
+ * Two measurements are printed. The first walks the object graph of one
+ * record and sizes each object with the HotSpot layout rules JOL uses
+ * (header, field sizes, 8-byte alignment; compressed oops assumed when the
+ * heap is under 32 GB). The second allocates many records and divides the
+ * growth of the used heap by their count, which also captures anything the
+ * model misses.
+ *
+ * Usage: {@code java contact.ContactFootprint [records]}
+ */
+public class ContactFootprint {
+
+    private static final boolean COMPRESSED = Runtime.getRuntime().maxMemory() < 32L * 1024 * 1024 * 1024;
+    private static final int REF = COMPRESSED ? 4 : 8;
+    private static final int HEADER = COMPRESSED ? 12 : 16;
+    private static final int ARRAY_HEADER = COMPRESSED ? 16 : 20;
+
+    /**
+     * Prints the report.
+     *
+     * @param args optional number of records for the heap measurement (default 1,000,000)
+     */
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        Contact sample = ContactLoadGenerator.syntheticContact(12345, rnd);
+        PackedContact packed = PackedContact.of(sample);
+
+        System.out.println("Layout model (" + (COMPRESSED ? "compressed oops" : "uncompressed oops") + "):");
+        report("Contact", sample);
+        report("PackedContact", packed);
+
+        System.out.println();
+        System.out.println("Measured heap per record over " + n + " records:");
+        System.out.printf("  %-14s %6.1f bytes%n", "Contact", measure(n, i -> ContactLoadGenerator.syntheticContact(i, rnd)));
+        System.out.printf("  %-14s %6.1f bytes%n", "PackedContact",
+                measure(n, i -> PackedContact.of(ContactLoadGenerator.syntheticContact(i, rnd))));
+
+        // Includes the dictionary's own entries, so this is the net saving
+        StringDictionary names = new StringDictionary();
+        Contact.useDictionary(names);
+        double shared = measure(n, i -> ContactLoadGenerator.syntheticContact(i, rnd));
+        Contact.useDictionary(null);
+        System.out.printf("  %-14s %6.1f bytes (shared names: %.1f%% hits, %d distinct)%n", "Contact+dict",
+                shared, names.getHitRate() * 100, names.size());
+    }
+
+    private static void report(String name, Object root) {
+        Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        long[] totals = new long[2]; // objects, bytes
+        walk(root, seen, totals);
+        System.out.printf("  %-14s %2d objects, %4d bytes (shallow %d)%n", name, totals[0], totals[1], shallowSize(root));
+    }
+
+    private static void walk(Object o, Set<Object> seen, long[] totals) {
+        if (o == null || !seen.add(o)) {
+            return;
+        }
+        totals[0]++;
+        totals[1] += shallowSize(o);
+        if (o instanceof String) {
+            // String internals are closed to reflection; count the compact-strings backing array
+            String s = (String) o;
+            boolean latin1 = s.chars().allMatch(ch -> ch <= 0xFF);
+            totals[0]++;
+            totals[1] += align(ARRAY_HEADER + (long) s.length() * (latin1 ? 1 : 2));
+            return;
+        }
+        Class<?> c = o.getClass();
+        if (c.isArray()) {
+            if (!c.getComponentType().isPrimitive()) {
+                for (int i = 0; i < Array.getLength(o); i++) {
+                    walk(Array.get(o, i), seen, totals);
+                }
+            }
+            return;
+        }
+        for (; c != null; c = c.getSuperclass()) {
+            for (Field f : c.getDeclaredFields()) {
+                if (Modifier.isStatic(f.getModifiers()) || f.getType().isPrimitive()) {
+                    continue;
+                }
+                try {
+                    f.setAccessible(true);
+                    walk(f.get(o), seen, totals);
+                } catch (RuntimeException | IllegalAccessException ex) {
+                    // Other JDK internals closed to reflection are sized by the model only
+                }
+            }
+        }
+    }
+
+    /**
+     * Shallow size of one object under the HotSpot layout model.
+     */
+    static long shallowSize(Object o) {
+        Class<?> c = o.getClass();
+        if (c.isArray()) {
+            Class<?> t = c.getComponentType();
+            return align(ARRAY_HEADER + (long) Array.getLength(o) * sizeOf(t));
+        }
+        long size = HEADER;
+        for (; c != null; c = c.getSuperclass()) {
+            for (Field f : c.getDeclaredFields()) {
+                if (!Modifier.isStatic(f.getModifiers())) {
+                    size += sizeOf(f.getType());
+                }
+            }
+        }
+        return align(size);
+    }
+
+    private static int sizeOf(Class<?> t) {
+        if (!t.isPrimitive()) {
+            return REF;
+        } else if (t == long.class || t == double.class) {
+            return 8;
+        } else if (t == int.class || t == float.class) {
+            return 4;
+        } else if (t == short.class || t == char.class) {
+            return 2;
+        }
+        return 1;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    private static double measure(int n, IntFunction<Object> factory) {
+        List<Object> keep = new ArrayList<>(n);
+        long before = usedAfterGc();
+        for (int i = 0; i < n; i++) {
+            keep.add(factory.apply(i));
+        }
+        long after = usedAfterGc();
+        double perRecord = (double) (after - before) / n - REF; // exclude the list slot
+        if (keep.size() != n) {
+            throw new IllegalStateException(); // keeps the list reachable until here
+        }
+        return perRecord;
+    }
+
+    private static long usedAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
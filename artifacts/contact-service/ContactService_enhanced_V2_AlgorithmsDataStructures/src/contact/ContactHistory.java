@@ -0,0 +1,545 @@
+package contact;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Audit history of every change to a ContactService, with as-of queries
+ * ("what was this contact's phone number last March").
+ *
+ * Register it with {@link ContactService#addListener(ContactListener)}.
+ * Each contact ID has its own append-only byte log. An entry is a varint
+ * time delta (milliseconds since the previous entry for that ID), a kind
+ * byte, and only the data that changed: the full record for an add,
+ * nothing for a delete, one field for an update. Every log also keeps a
+ * small time index of its full-record entries: adds, and a checkpoint of
+ * the whole record written after every {@value #BASE_INTERVAL} other
+ * entries. An as-of query binary-searches that index for the last full
+ * record at or before the requested time and replays only from there, so
+ * it reads at most about {@value #BASE_INTERVAL} entries however long the
+ * log is. A whole-dataset query does this for all logs in parallel.
+ *
+ * A reload ({@link #contactsLoaded}) records an add only for contacts
+ * whose values differ from their last recorded state.
+ *
+ * Retention is applied by {@link #compact()}: entries older than the
+ * maximum age, or beyond the per-contact entry limit, are folded into a
+ * single base record, so as-of queries inside the retained window still
+ * give exact answers.
+ */
+public class ContactHistory implements ContactListener {
+
+    private static final byte ADD = 0;
+    private static final byte DELETE = 1;
+    private static final byte UPDATE = 2; // + field ordinal
+    private static final ContactField[] FIELDS = ContactField.values();
+    private static final byte BASE = (byte) (UPDATE + FIELDS.length); // checkpoint, not a change
+    private static final int BASE_INTERVAL = 32;
+
+    private final LongSupplier clock;
+    private final Map<String, Log> logs = new HashMap<>();
+    private final Set<String> liveIds = new HashSet<>();
+    private long maxAgeMillis = Long.MAX_VALUE;
+    private int maxEntriesPerContact = Integer.MAX_VALUE;
+
+    /**
+     * Creates an empty history using the system clock.
+     */
+    public ContactHistory() {
+        this(System::currentTimeMillis);
+    }
+
+    /**
+     * Creates an empty history with a custom clock.
+     *
+     * @param clock returns the current time in epoch milliseconds
+     * @throws IllegalArgumentException if clock is null
+     */
+    public ContactHistory(LongSupplier clock) {
+        if (clock == null) {
+            throw new IllegalArgumentException("clock cannot be null");
+        }
+        this.clock = clock;
+    }
+
+    /**
+     * Sets the retention policy applied by {@link #compact()}.
+     *
+     * @param maxAgeMillis keep exact history for this long (Long.MAX_VALUE for forever)
+     * @param maxEntriesPerContact keep at most this many entries per contact (at least 1)
+     * @throws IllegalArgumentException if a limit is not positive
+     */
+    public synchronized void setRetention(long maxAgeMillis, int maxEntriesPerContact) {
+        if (maxAgeMillis <= 0 || maxEntriesPerContact <= 0) {
+            throw new IllegalArgumentException("retention limits must be positive");
+        }
+        this.maxAgeMillis = maxAgeMillis;
+        this.maxEntriesPerContact = maxEntriesPerContact;
+    }
+
+    // ---- queries ----
+
+    /**
+     * Returns a contact as it was at a point in time.
+     *
+     * @param id contact ID
+     * @param timeMillis epoch milliseconds
+     * @return the contact's values at that time, or null if it did not exist then
+     */
+    public Contact asOf(String id, long timeMillis) {
+        Log log;
+        synchronized (this) {
+            log = logs.get(id);
+            log = log == null ? null : log.view();
+        }
+        return log == null ? null : replay(id, log, timeMillis, null);
+    }
+
+    /**
+     * Returns every contact that existed at a point in time.
+     *
+     * @param timeMillis epoch milliseconds
+     * @return contacts as they were then, in no particular order
+     */
+    public List<Contact> asOf(long timeMillis) {
+        Map<String, Log> views = new HashMap<>();
+        synchronized (this) {
+            for (Map.Entry<String, Log> e : logs.entrySet()) {
+                views.put(e.getKey(), e.getValue().view());
+            }
+        }
+        return views.entrySet().parallelStream()
+                .map(e -> replay(e.getKey(), e.getValue(), timeMillis, null))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Lists the recorded changes to one contact, oldest first.
+     *
+     * @param id contact ID
+     * @return changes (empty if the ID was never seen)
+     */
+    public List<Change> changes(String id) {
+        Log log;
+        synchronized (this) {
+            log = logs.get(id);
+            log = log == null ? null : log.view();
+        }
+        if (log == null) {
+            return Collections.emptyList();
+        }
+        List<Change> out = new ArrayList<>();
+        replay(id, log, Long.MAX_VALUE, out);
+        return out;
+    }
+
+    /**
+     * @return total bytes used by all logs
+     */
+    public synchronized long sizeInBytes() {
+        long n = 0;
+        for (Log l : logs.values()) {
+            n += l.length;
+        }
+        return n;
+    }
+
+    /**
+     * Applies the retention policy: for each contact, entries older than the
+     * maximum age or beyond the entry limit are merged into one base entry.
+     * Contacts deleted before the cutoff are dropped entirely.
+     *
+     * @return number of bytes freed
+     */
+    public synchronized long compact() {
+        long before = sizeInBytes();
+        long now = clock.getAsLong();
+        long cutoff = maxAgeMillis == Long.MAX_VALUE ? Long.MIN_VALUE : now - maxAgeMillis;
+        logs.entrySet().removeIf(e -> {
+            Log compacted = compact(e.getValue(), cutoff);
+            if (compacted == null) {
+                return true;
+            }
+            e.setValue(compacted);
+            return false;
+        });
+        return before - sizeInBytes();
+    }
+
+    // ---- ContactListener (called under the service lock) ----
+
+    @Override
+    public synchronized void contactAdded(Contact contact) {
+        record(log(contact.getContactID()), clock.getAsLong(), ADD, values(contact));
+        liveIds.add(contact.getContactID());
+    }
+
+    @Override
+    public synchronized void contactDeleted(Contact contact) {
+        record(log(contact.getContactID()), clock.getAsLong(), DELETE, Entry.NONE);
+        liveIds.remove(contact.getContactID());
+    }
+
+    @Override
+    public synchronized void contactUpdated(Contact contact, ContactField field, String oldValue, String newValue) {
+        record(log(contact.getContactID()), clock.getAsLong(), (byte) (UPDATE + field.ordinal()), new String[] {newValue});
+    }
+
+    @Override
+    public synchronized void contactsLoaded(List<Contact> contacts) {
+        long now = clock.getAsLong();
+        Set<String> loaded = new HashSet<>(contacts.size() * 2);
+        for (Contact c : contacts) {
+            loaded.add(c.getContactID());
+        }
+        for (String id : liveIds) {
+            if (!loaded.contains(id)) {
+                record(log(id), now, DELETE, Entry.NONE);
+            }
+        }
+        for (Contact c : contacts) {
+            // Reloading the same data must not grow the history
+            Log log = logs.get(c.getContactID());
+            String[] v = values(c);
+            if (log == null || !Arrays.equals(log.current, v)) {
+                record(log(c.getContactID()), now, ADD, v);
+            }
+        }
+        liveIds.clear();
+        liveIds.addAll(loaded);
+    }
+
+    // ---- private helpers ----
+
+    private Log log(String id) {
+        return logs.computeIfAbsent(id, k -> new Log());
+    }
+
+    private static String[] values(Contact c) {
+        return new String[] {c.getFirstName(), c.getLastName(), c.getPhone(), c.getAddress()};
+    }
+
+    /**
+     * Appends one change and keeps the log's current values up to date,
+     * adding a checkpoint once enough entries follow the last full record.
+     */
+    private static void record(Log log, long time, byte kind, String[] values) {
+        log.append(time, kind);
+        for (String value : values) {
+            log.putString(value);
+        }
+        if (kind == ADD) {
+            log.current = values.clone();
+        } else if (kind == DELETE) {
+            log.current = null;
+        } else if (log.current != null) {
+            log.current[kind - UPDATE] = values[0];
+        }
+        // No checkpoint without a known full record, e.g. updates seen before any add
+        if (log.current != null && log.sinceBase >= BASE_INTERVAL) {
+            log.append(time, BASE);
+            for (String value : log.current) {
+                log.putString(value);
+            }
+        }
+    }
+
+    /**
+     * Replays a log up to a time. Returns the state at that time, and
+     * optionally collects every change seen. Without collecting, replay
+     * starts at the last full record at or before the time.
+     */
+    private static Contact replay(String id, Log log, long timeMillis, List<Change> changes) {
+        String[] v = null; // first, last, phone, address (ContactField order); null when absent
+        int b = changes == null ? log.lastBaseAtOrBefore(timeMillis) : -1;
+        Reader r = b < 0 ? new Reader(log, 0, 0) : new Reader(log, log.baseOffsets[b], log.basePrevTimes[b]);
+        while (r.hasNext()) {
+            Entry e = r.next();
+            if (e.time > timeMillis) {
+                break;
+            }
+            v = apply(v, e);
+            if (changes != null && e.kind != BASE) {
+                changes.add(e.toChange());
+            }
+        }
+        return v == null ? null : Contact.restore(id, v[0], v[1], v[2], v[3]);
+    }
+
+    private static String[] apply(String[] v, Entry e) {
+        if (e.kind == ADD || e.kind == BASE) {
+            return e.values.clone();
+        } else if (e.kind == DELETE) {
+            return null;
+        }
+        if (v != null) {
+            v[e.kind - UPDATE] = e.values[0];
+        }
+        return v;
+    }
+
+    /**
+     * Folds old entries of one log into a base entry.
+     *
+     * @return the compacted log (possibly the same one), or null if nothing needs keeping
+     */
+    private Log compact(Log log, long cutoff) {
+        List<Entry> entries = new ArrayList<>(); // changes only; checkpoints are rewritten
+        Reader r = new Reader(log.view(), 0, 0);
+        while (r.hasNext()) {
+            Entry e = r.next();
+            if (e.kind != BASE) {
+                entries.add(e);
+            }
+        }
+        int keepFrom = 0;
+        while (keepFrom < entries.size() && entries.get(keepFrom).time < cutoff) {
+            keepFrom++;
+        }
+        // The base entry counts toward the limit
+        keepFrom = Math.max(keepFrom, entries.size() - maxEntriesPerContact + 1);
+        if (keepFrom <= 1) {
+            return log; // at most the first entry would fold into itself
+        }
+
+        String[] base = null;
+        for (int i = 0; i < keepFrom; i++) {
+            base = apply(base, entries.get(i));
+        }
+        if (base == null && keepFrom == entries.size()) {
+            return null; // deleted before the cutoff and never re-added
+        }
+
+        Log out = new Log();
+        if (base != null) {
+            record(out, entries.get(keepFrom - 1).time, ADD, base);
+        }
+        for (int i = keepFrom; i < entries.size(); i++) {
+            Entry e = entries.get(i);
+            record(out, e.time, e.kind, e.values);
+        }
+        return out;
+    }
+
+    /**
+     * One decoded log entry.
+     */
+    private static final class Entry {
+        private static final String[] NONE = new String[0];
+        final long time;
+        final byte kind;
+        final String[] values; // 4 for ADD, 0 for DELETE, 1 for UPDATE
+
+        Entry(long time, byte kind, String[] values) {
+            this.time = time;
+            this.kind = kind;
+            this.values = values;
+        }
+
+        Change toChange() {
+            if (kind == ADD) {
+                return new Change(time, Change.Kind.ADD, null, String.join("|", values));
+            } else if (kind == DELETE) {
+                return new Change(time, Change.Kind.DELETE, null, null);
+            }
+            return new Change(time, Change.Kind.UPDATE, FIELDS[kind - UPDATE], values[0]);
+        }
+    }
+
+    /**
+     * One change as recorded in the history.
+     */
+    public static class Change {
+        /**
+         * Kind of change.
+         */
+        public enum Kind {ADD, DELETE, UPDATE}
+
+        private final long timeMillis;
+        private final Kind kind;
+        private final ContactField field;
+        private final String value;
+
+        Change(long timeMillis, Kind kind, ContactField field, String value) {
+            this.timeMillis = timeMillis;
+            this.kind = kind;
+            this.field = field;
+            this.value = value;
+        }
+
+        public long getTimeMillis() {return timeMillis;}
+        public Kind getKind() {return kind;}
+        /** @return changed field for updates, otherwise null */
+        public ContactField getField() {return field;}
+        /** @return new value for updates, "first|last|phone|address" for adds, null for deletes */
+        public String getValue() {return value;}
+
+        @Override
+        public String toString() {
+            return timeMillis + " " + kind + (field == null ? "" : " " + field) + (value == null ? "" : " " + value);
+        }
+    }
+
+    /**
+     * Append-only byte log for one contact, with a time index of its
+     * full-record entries.
+     */
+    private static final class Log {
+        private static final int[] NO_OFFSETS = new int[0];
+        private static final long[] NO_TIMES = new long[0];
+
+        byte[] data;
+        int length;
+        long lastTime;
+        // Full-record entries: byte offset, entry time, and the time before it (the
+        // decoder's starting point). Append-only like data, so views can share them.
+        int bases;
+        int[] baseOffsets = NO_OFFSETS;
+        long[] baseTimes = NO_TIMES;
+        long[] basePrevTimes = NO_TIMES;
+        int sinceBase;          // entries since the last full record
+        String[] current;       // latest values; null if deleted or never added (not in views)
+
+        Log() {
+            this(new byte[16], 0, 0);
+        }
+
+        Log(byte[] data, int length, long lastTime) {
+            this.data = data;
+            this.length = length;
+            this.lastTime = lastTime;
+        }
+
+        /** Immutable view of the current prefix; later appends never touch it. */
+        Log view() {
+            Log v = new Log(data, length, lastTime);
+            v.bases = bases;
+            v.baseOffsets = baseOffsets;
+            v.baseTimes = baseTimes;
+            v.basePrevTimes = basePrevTimes;
+            return v;
+        }
+
+        void append(long time, byte kind) {
+            long t = Math.max(time, lastTime); // clocks can step back; keep the log ordered
+            if (kind == ADD || kind == BASE) {
+                if (bases == baseOffsets.length) {
+                    int n = Math.max(4, bases * 2);
+                    baseOffsets = Arrays.copyOf(baseOffsets, n);
+                    baseTimes = Arrays.copyOf(baseTimes, n);
+                    basePrevTimes = Arrays.copyOf(basePrevTimes, n);
+                }
+                baseOffsets[bases] = length;
+                baseTimes[bases] = t;
+                basePrevTimes[bases] = lastTime;
+                bases++;
+                sinceBase = 0;
+            } else {
+                sinceBase++;
+            }
+            putVarint(t - lastTime);
+            lastTime = t;
+            ensure(1);
+            data[length++] = kind;
+        }
+
+        /**
+         * @return index of the last full record at or before a time, or -1
+         */
+        int lastBaseAtOrBefore(long time) {
+            int lo = 0;
+            int hi = bases;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (baseTimes[mid] <= time) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo - 1;
+        }
+
+        void putString(String s) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            putVarint(b.length);
+            ensure(b.length);
+            System.arraycopy(b, 0, data, length, b.length);
+            length += b.length;
+        }
+
+        void putVarint(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                data[length++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            data[length++] = (byte) v;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + extra));
+            }
+        }
+    }
+
+    /**
+     * Sequential decoder over a log view.
+     */
+    private static final class Reader {
+        private final Log log;
+        private int pos;
+        private long time;
+
+        /**
+         * @param pos offset of an entry to start at
+         * @param time time of the entry before it (0 at the start of the log)
+         */
+        Reader(Log log, int pos, long time) {
+            this.log = log;
+            this.pos = pos;
+            this.time = time;
+        }
+
+        boolean hasNext() {
+            return pos < log.length;
+        }
+
+        Entry next() {
+            time += varint();
+            byte kind = log.data[pos++];
+            int count = kind == ADD || kind == BASE ? 4 : kind == DELETE ? 0 : 1;
+            String[] values = count == 0 ? Entry.NONE : new String[count];
+            for (int i = 0; i < count; i++) {
+                int n = (int) varint();
+                values[i] = new String(log.data, pos, n, StandardCharsets.UTF_8);
+                pos += n;
+            }
+            return new Entry(time, kind, values);
+        }
+
+        private long varint() {
+            long v = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = log.data[pos++];
+                v |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return v;
+        }
+    }
+}
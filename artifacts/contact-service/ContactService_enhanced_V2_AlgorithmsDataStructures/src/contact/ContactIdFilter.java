@@ -0,0 +1,204 @@
+package contact;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Counting Bloom filter over contact IDs.
+ *
+ * {@link #mightContain(String)} returning false means the ID is definitely
+ * not stored, so a lookup can fail without touching the map or the disk.
+ * Each slot is an 8-bit counter rather than a bit, which lets deletes
+ * decrement it again; a counter that reaches 255 sticks there so it can
+ * never cause a false negative.
+ */
+public class ContactIdFilter {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final byte[] counters;
+    private final int hashCount;
+    private final int capacity;
+    private final double falsePositiveRate;
+    private int size;
+
+    /**
+     * Creates a filter sized for an expected number of IDs.
+     *
+     * @param capacity number of IDs the filter should hold at the target rate
+     * @param falsePositiveRate target probability that a missing ID passes, in (0, 1)
+     * @throws IllegalArgumentException if capacity is not positive or the rate is out of range
+     */
+    public ContactIdFilter(int capacity, double falsePositiveRate) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+        double ln2 = Math.log(2);
+        long slots = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.counters = new byte[(int) Math.min(Integer.MAX_VALUE - 8, Math.max(64, slots))];
+        this.hashCount = Math.max(1, (int) Math.round((double) counters.length / capacity * ln2));
+        this.capacity = capacity;
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    private ContactIdFilter(byte[] counters, int hashCount, int capacity, double falsePositiveRate, int size) {
+        this.counters = counters;
+        this.hashCount = hashCount;
+        this.capacity = capacity;
+        this.falsePositiveRate = falsePositiveRate;
+        this.size = size;
+    }
+
+    /**
+     * Records an ID.
+     *
+     * @param id contact ID
+     */
+    public void add(String id) {
+        long h = hash(id);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            int slot = slot(h1 + i * h2);
+            if (counters[slot] != (byte) 0xFF) {
+                counters[slot]++;
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Forgets an ID that was previously added.
+     *
+     * @param id contact ID
+     */
+    public void remove(String id) {
+        long h = hash(id);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            int slot = slot(h1 + i * h2);
+            byte c = counters[slot];
+            if (c != 0 && c != (byte) 0xFF) {
+                counters[slot]--;
+            }
+        }
+        size--;
+    }
+
+    /**
+     * Tests whether an ID may be present.
+     *
+     * @param id contact ID
+     * @return false if the ID is definitely absent, true if it may be present
+     */
+    public boolean mightContain(String id) {
+        long h = hash(id);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            if (counters[slot(h1 + i * h2)] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return number of IDs currently recorded
+     */
+    public int size() {return size;}
+
+    /**
+     * @return number of IDs the filter was sized for
+     */
+    public int getCapacity() {return capacity;}
+
+    /**
+     * @return configured target false-positive rate
+     */
+    public double getFalsePositiveRate() {return falsePositiveRate;}
+
+    /**
+     * Estimated false-positive rate at the current fill level.
+     *
+     * @return probability that an absent ID passes {@link #mightContain(String)}
+     */
+    public double expectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashCount * size / counters.length), hashCount);
+    }
+
+    /**
+     * Writes the filter in a compact binary form.
+     *
+     * @param out stream to write to (not closed)
+     * @throws IOException if writing fails
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(FORMAT_VERSION);
+        data.writeInt(counters.length);
+        data.writeInt(hashCount);
+        data.writeInt(capacity);
+        data.writeDouble(falsePositiveRate);
+        data.writeInt(size);
+        data.write(counters);
+        data.flush();
+    }
+
+    /**
+     * Reads a filter written by {@link #writeTo(OutputStream)}.
+     *
+     * @param in stream to read from (not closed)
+     * @return the filter
+     * @throws IOException if reading fails or the data is not a filter
+     */
+    public static ContactIdFilter readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != FORMAT_VERSION) {
+            throw new IOException("unsupported ID filter format");
+        }
+        int slots = data.readInt();
+        int hashCount = data.readInt();
+        int capacity = data.readInt();
+        double rate = data.readDouble();
+        int size = data.readInt();
+        // Check the header before allocating, so a bad length cannot ask for gigabytes
+        if (slots < 64 || slots > Integer.MAX_VALUE - 8 || hashCount < 1 || hashCount > slots
+                || capacity <= 0 || !(rate > 0 && rate < 1) || size < 0) {
+            throw new IOException("damaged ID filter");
+        }
+        byte[] counters = new byte[slots];
+        data.readFully(counters);
+        return new ContactIdFilter(counters, hashCount, capacity, rate, size);
+    }
+
+    // ---- private helpers ----
+
+    private int slot(int h) {
+        return (int) (((h & 0xFFFFFFFFL) * counters.length) >>> 32); // fast range reduction
+    }
+
+    private static long hash(String id) {
+        // FNV-1a over the chars, then a 64-bit finalizer so both halves are usable
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            h ^= id.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= (h >>> 33);
+        return h | 1L << 32; // odd second hash, so the k probes never collapse onto one slot
+    }
+}
@@ -0,0 +1,44 @@
+package contact;
+
+import java.util.List;
+
+/**
+ * Receives notifications of every change made through a ContactService.
+ *
+ * Callbacks run synchronously on the mutating thread, after the change has
+ * been applied and while the service lock is still held, so listeners see
+ * changes in exactly the order they happened. Keep them short.
+ */
+public interface ContactListener {
+
+    /**
+     * Called after a contact has been added.
+     *
+     * @param contact the new contact
+     */
+    default void contactAdded(Contact contact) {}
+
+    /**
+     * Called after a contact has been removed.
+     *
+     * @param contact the removed contact
+     */
+    default void contactDeleted(Contact contact) {}
+
+    /**
+     * Called after a single field of a contact has changed.
+     *
+     * @param contact the updated contact
+     * @param field the field that changed
+     * @param oldValue value before the update
+     * @param newValue value after the update
+     */
+    default void contactUpdated(Contact contact, ContactField field, String oldValue, String newValue) {}
+
+    /**
+     * Called after {@link ContactService#loadAll(List)} replaced the whole data set.
+     *
+     * @param contacts the contacts now in the service
+     */
+    default void contactsLoaded(List<Contact> contacts) {}
+}
@@ -0,0 +1,353 @@
+package contact;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Standalone load generator for ContactService (and optionally ContactStorage).
+ *
+ * Preloads synthetic contacts, then runs a configurable mix of reads,
+ * updates, inserts and deletes from many threads for a fixed time, and
+ * reports throughput and latency percentiles. Each thread is a closed loop;
+ * with {@code --rate} it follows a fixed schedule and latency is measured
+ * from the intended start, otherwise the histogram is corrected for
+ * coordinated omission using the mean service time as the expected interval.
+ *
+ * Usage: {@code java contact.ContactLoadGenerator [options]}
+ * <pre>
+ *   --threads N        worker threads (default: available processors)
+ *   --seconds N        measured run time (default 10)
+ *   --warmup N         warmup seconds, not reported (default 2)
+ *   --records N        contacts preloaded and size of the key space (default 100000)
+ *   --mix R/U/I/D      percent reads/updates/inserts/deletes (default 90/8/1/1)
+ *   --dist uniform|zipf  key distribution (default uniform)
+ *   --rate N           target ops/second per thread (default: unthrottled)
+ *   --persist FILE     save all contacts to FILE every --save-ms ms during the run
+ *   --save-ms N        save interval (default 1000)
+ * </pre>
+ */
+public class ContactLoadGenerator {
+
+    private static final String[] SYLLABLES = {"an", "be", "ca", "do", "el", "fi", "ga", "ho", "ir", "ju",
+            "ka", "lo", "mi", "no", "ol", "pa", "ri", "sa", "te", "vi"};
+    private static final String[] STREETS = {"Main St", "Oak Ave", "Pine Rd", "Maple Dr", "Cedar Ln",
+            "Elm St", "Lake Blvd", "Hill Ct"};
+
+    private enum Op {READ, UPDATE, INSERT, DELETE}
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int seconds = 10;
+    private int warmup = 2;
+    private int records = 100_000;
+    private int[] mix = {90, 8, 1, 1};
+    private boolean zipf;
+    private double rate;
+    private Path persist;
+    private long saveMillis = 1000;
+
+    /**
+     * Runs the load generator.
+     *
+     * @param args command-line options (see class documentation)
+     * @throws Exception if a worker fails unexpectedly
+     */
+    public static void main(String[] args) throws Exception {
+        ContactLoadGenerator gen = new ContactLoadGenerator();
+        try {
+            gen.parse(args);
+        } catch (IllegalArgumentException ex) {
+            System.out.println("Invalid arguments: " + ex.getMessage());
+            return;
+        }
+        gen.run();
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            if (value == null) {
+                throw new IllegalArgumentException("missing value for " + args[i]);
+            }
+            switch (args[i]) {
+                case "--threads": threads = Integer.parseInt(value); break;
+                case "--seconds": seconds = Integer.parseInt(value); break;
+                case "--warmup":  warmup = Integer.parseInt(value); break;
+                case "--records": records = Integer.parseInt(value); break;
+                case "--dist":    zipf = value.equals("zipf"); break;
+                case "--rate":    rate = Double.parseDouble(value); break;
+                case "--persist": persist = Path.of(value); break;
+                case "--save-ms": saveMillis = Long.parseLong(value); break;
+                case "--mix":
+                    String[] parts = value.split("/");
+                    if (parts.length != 4) {
+                        throw new IllegalArgumentException("--mix needs R/U/I/D");
+                    }
+                    for (int j = 0; j < 4; j++) {
+                        mix[j] = Integer.parseInt(parts[j]);
+                    }
+                    if (mix[0] + mix[1] + mix[2] + mix[3] != 100) {
+                        throw new IllegalArgumentException("--mix must add up to 100");
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+            i++;
+        }
+        if (threads <= 0 || seconds <= 0 || records <= 0) {
+            throw new IllegalArgumentException("threads, seconds and records must be positive");
+        }
+    }
+
+    private void run() throws Exception {
+        ContactService service = new ContactService();
+        List<Contact> initial = new ArrayList<>(records);
+        for (int i = 0; i < records; i++) {
+            initial.add(syntheticContact(i, ThreadLocalRandom.current()));
+        }
+        service.loadAll(initial);
+        System.out.printf("Preloaded %d contacts; %d threads, mix R/U/I/D=%d/%d/%d/%d, %s keys, %s%n",
+                records, threads, mix[0], mix[1], mix[2], mix[3], zipf ? "zipfian" : "uniform",
+                rate > 0 ? "target " + rate + " ops/s/thread" : "unthrottled");
+
+        ContactStorage storage = persist == null ? null : new ContactStorage(persist);
+        ZipfianGenerator zipfGen = zipf ? new ZipfianGenerator(records) : null;
+        LatencyHistogram saveTimes = new LatencyHistogram();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads + 1);
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmup);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(seconds);
+
+        Future<?> saver = null;
+        if (storage != null) {
+            saver = pool.submit(() -> {
+                while (System.nanoTime() < end) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(saveMillis));
+                    long t0 = System.nanoTime();
+                    storage.save(service.getAllContacts());
+                    if (t0 >= measureFrom) {
+                        saveTimes.record(System.nanoTime() - t0);
+                    }
+                }
+            });
+        }
+
+        List<Future<Worker>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Worker w = new Worker(service, zipfGen, measureFrom, end);
+            futures.add(pool.submit(w, w));
+        }
+        LatencyHistogram all = new LatencyHistogram();
+        LatencyHistogram intended = new LatencyHistogram();
+        LatencyHistogram[] perOp = new LatencyHistogram[Op.values().length];
+        for (int i = 0; i < perOp.length; i++) {
+            perOp[i] = new LatencyHistogram();
+        }
+        long misses = 0;
+        for (Future<Worker> f : futures) {
+            Worker w = f.get();
+            all.add(w.raw);
+            intended.add(w.intended);
+            for (int i = 0; i < perOp.length; i++) {
+                perOp[i].add(w.perOp[i]);
+            }
+            misses += w.misses;
+        }
+        if (saver != null) {
+            saver.get();
+        }
+        pool.shutdown();
+
+        double secs = seconds;
+        System.out.printf("Throughput: %.0f ops/s (%d ops, %d not found / already exists)%n",
+                all.getCount() / secs, all.getCount(), misses);
+        System.out.println("Latency (service time):  " + all.summary());
+        if (rate > 0) {
+            System.out.println("Latency (from schedule): " + intended.summary());
+        } else {
+            System.out.println("Latency (CO-corrected):  " + all.correctedFor((long) all.getMean()).summary());
+        }
+        for (Op op : Op.values()) {
+            if (perOp[op.ordinal()].getCount() > 0) {
+                System.out.printf("  %-7s %s%n", op, perOp[op.ordinal()].summary());
+            }
+        }
+        if (storage != null) {
+            System.out.println("Saves: " + saveTimes.summary());
+        }
+        System.out.println("Final size: " + service.size());
+    }
+
+    /**
+     * One closed-loop client thread.
+     */
+    private class Worker implements Runnable {
+        private final ContactService service;
+        private final ZipfianGenerator zipfGen;
+        private final long measureFrom;
+        private final long end;
+        final LatencyHistogram raw = new LatencyHistogram();
+        final LatencyHistogram intended = new LatencyHistogram();
+        final LatencyHistogram[] perOp = new LatencyHistogram[Op.values().length];
+        long misses;
+
+        Worker(ContactService service, ZipfianGenerator zipfGen, long measureFrom, long end) {
+            this.service = service;
+            this.zipfGen = zipfGen;
+            this.measureFrom = measureFrom;
+            this.end = end;
+            for (int i = 0; i < perOp.length; i++) {
+                perOp[i] = new LatencyHistogram();
+            }
+        }
+
+        @Override
+        public void run() {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            long interval = rate > 0 ? (long) (1e9 / rate) : 0;
+            long next = System.nanoTime();
+            while (true) {
+                long now = System.nanoTime();
+                if (interval > 0) {
+                    if (now < next) {
+                        LockSupport.parkNanos(next - now);
+                        now = System.nanoTime();
+                    }
+                } else {
+                    next = now;
+                }
+                if (now >= end) {
+                    return;
+                }
+                Op op = pickOp(rnd);
+                int key = zipfGen != null ? zipfGen.next(rnd) : rnd.nextInt(records);
+
+                long t0 = System.nanoTime();
+                boolean ok = execute(op, key, rnd);
+                long t1 = System.nanoTime();
+
+                if (t0 >= measureFrom) {
+                    raw.record(t1 - t0);
+                    intended.record(t1 - next); // includes time spent waiting behind slow ops
+                    perOp[op.ordinal()].record(t1 - t0);
+                    if (!ok) {
+                        misses++;
+                    }
+                }
+                next += interval;
+            }
+        }
+
+        private Op pickOp(ThreadLocalRandom rnd) {
+            int r = rnd.nextInt(100);
+            if (r < mix[0]) {
+                return Op.READ;
+            } else if (r < mix[0] + mix[1]) {
+                return Op.UPDATE;
+            } else if (r < mix[0] + mix[1] + mix[2]) {
+                return Op.INSERT;
+            }
+            return Op.DELETE;
+        }
+
+        private boolean execute(Op op, int key, ThreadLocalRandom rnd) {
+            String id = idOf(key);
+            try {
+                switch (op) {
+                    case READ:
+                        service.getContactById(id);
+                        break;
+                    case UPDATE:
+                        service.updatePhone(id, phoneOf(rnd.nextLong(10_000_000_000L)));
+                        break;
+                    case INSERT:
+                        service.addContact(syntheticContact(key, rnd));
+                        break;
+                    default:
+                        service.deleteContact(id);
+                        break;
+                }
+                return true;
+            } catch (IllegalArgumentException ex) {
+                return false; // missing or duplicate key: expected under random keys
+            }
+        }
+    }
+
+    // ---- synthetic data within the Contact field limits ----
+
+    static Contact syntheticContact(int key, ThreadLocalRandom rnd) {
+        return new Contact(idOf(key), name(rnd), name(rnd), phoneOf(rnd.nextLong(10_000_000_000L)),
+                (1 + rnd.nextInt(9999)) + " " + STREETS[rnd.nextInt(STREETS.length)]);
+    }
+
+    static String idOf(int key) {
+        return "c" + Integer.toString(key, 36); // at most 7 chars
+    }
+
+    private static String name(ThreadLocalRandom rnd) {
+        StringBuilder sb = new StringBuilder(10);
+        int n = 2 + rnd.nextInt(4); // 2-5 syllables, at most 10 chars
+        for (int i = 0; i < n; i++) {
+            sb.append(SYLLABLES[rnd.nextInt(SYLLABLES.length)]);
+        }
+        sb.setCharAt(0, Character.toUpperCase(sb.charAt(0)));
+        return sb.toString();
+    }
+
+    private static String phoneOf(long n) {
+        String digits = Long.toString(n);
+        return "0000000000".substring(digits.length()) + digits;
+    }
+
+    /**
+     * Zipfian key generator (Gray et al., as used by YCSB) over {@code [0, n)}.
+     * Key 0 is the most popular; keys are scattered so hot keys are not adjacent.
+     */
+    static final class ZipfianGenerator {
+        private static final double THETA = 0.99;
+        private final int n;
+        private final double alpha;
+        private final double zetan;
+        private final double eta;
+
+        ZipfianGenerator(int n) {
+            this.n = n;
+            double zeta2 = zeta(2);
+            this.zetan = zeta(n);
+            this.alpha = 1.0 / (1.0 - THETA);
+            this.eta = (1 - Math.pow(2.0 / n, 1 - THETA)) / (1 - zeta2 / zetan);
+        }
+
+        int next(ThreadLocalRandom rnd) {
+            double u = rnd.nextDouble();
+            double uz = u * zetan;
+            int rank;
+            if (uz < 1.0) {
+                rank = 0;
+            } else if (uz < 1.0 + Math.pow(0.5, THETA)) {
+                rank = 1;
+            } else {
+                rank = (int) (n * Math.pow(eta * u - eta + 1, alpha));
+            }
+            // Scatter ranks across the key space so hot keys are not neighbours
+            return (int) Math.floorMod((long) (rank * 0x9E3779B1), (long) n);
+        }
+
+        private static double zeta(long count) {
+            double sum = 0;
+            for (long i = 1; i <= count; i++) {
+                sum += 1.0 / Math.pow(i, THETA);
+            }
+            return sum;
+        }
+    }
+}
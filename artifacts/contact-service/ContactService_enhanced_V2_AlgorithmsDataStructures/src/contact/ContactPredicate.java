@@ -0,0 +1,195 @@
+package contact;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A condition on contact fields, used by {@link ContactQuery}.
+ *
+ * Leaf predicates compare one field (equals, prefix, range, contains);
+ * {@link #and(ContactPredicate...)} and {@link #or(ContactPredicate...)}
+ * combine them. The planner looks at the structure to pick an index, so
+ * predicates are plain data rather than opaque lambdas.
+ */
+public abstract class ContactPredicate {
+
+    /**
+     * Comparison performed by a leaf predicate.
+     */
+    public enum Op {EQUALS, PREFIX, RANGE, CONTAINS}
+
+    ContactPredicate() {}
+
+    /**
+     * Tests a contact.
+     *
+     * @param c contact to test
+     * @return true if the contact matches
+     */
+    public abstract boolean test(Contact c);
+
+    /**
+     * Matches every contact; use with an ordering and limit to page through
+     * the whole service.
+     *
+     * @return predicate
+     */
+    public static ContactPredicate all() {
+        return new Leaf(ContactQuery.Field.ID, Op.RANGE, null, null);
+    }
+
+    /**
+     * Field equals a value.
+     *
+     * @param field field to compare
+     * @param value expected value
+     * @return predicate
+     */
+    public static ContactPredicate equalTo(ContactQuery.Field field, String value) {
+        return new Leaf(field, Op.EQUALS, value, null);
+    }
+
+    /**
+     * Field starts with a prefix, e.g. {@code prefix(PHONE, "415")} for an area code.
+     *
+     * @param field field to compare
+     * @param prefix required prefix
+     * @return predicate
+     */
+    public static ContactPredicate prefix(ContactQuery.Field field, String prefix) {
+        return new Leaf(field, Op.PREFIX, prefix, null);
+    }
+
+    /**
+     * Field lies in {@code [from, to)} in string order. Either bound may be null for an open range.
+     *
+     * @param field field to compare
+     * @param from inclusive lower bound, or null
+     * @param to exclusive upper bound, or null
+     * @return predicate
+     */
+    public static ContactPredicate range(ContactQuery.Field field, String from, String to) {
+        return new Leaf(field, Op.RANGE, from, to);
+    }
+
+    /**
+     * Field contains a substring anywhere. Never uses an index.
+     *
+     * @param field field to compare
+     * @param text required substring
+     * @return predicate
+     */
+    public static ContactPredicate contains(ContactQuery.Field field, String text) {
+        return new Leaf(field, Op.CONTAINS, text, null);
+    }
+
+    /**
+     * All conditions must hold.
+     *
+     * @param parts conditions
+     * @return predicate
+     */
+    public static ContactPredicate and(ContactPredicate... parts) {
+        return new Junction(true, parts);
+    }
+
+    /**
+     * At least one condition must hold.
+     *
+     * @param parts conditions
+     * @return predicate
+     */
+    public static ContactPredicate or(ContactPredicate... parts) {
+        return new Junction(false, parts);
+    }
+
+    /**
+     * A single-field comparison.
+     */
+    static final class Leaf extends ContactPredicate {
+        final ContactQuery.Field field;
+        final Op op;
+        final String value;
+        final String to; // upper bound for RANGE
+
+        Leaf(ContactQuery.Field field, Op op, String value, String to) {
+            if (field == null || op == null) {
+                throw new IllegalArgumentException("field and op cannot be null");
+            }
+            if (value == null && op != Op.RANGE) {
+                throw new IllegalArgumentException("value cannot be null");
+            }
+            this.field = field;
+            this.op = op;
+            this.value = value;
+            this.to = to;
+        }
+
+        @Override
+        public boolean test(Contact c) {
+            String v = field.get(c);
+            switch (op) {
+                case EQUALS:   return v.equals(value);
+                case PREFIX:   return v.startsWith(value);
+                case CONTAINS: return v.contains(value);
+                default:
+                    return (value == null || v.compareTo(value) >= 0) && (to == null || v.compareTo(to) < 0);
+            }
+        }
+
+        @Override
+        public String toString() {
+            if (op == Op.RANGE) {
+                return field + " in [" + (value == null ? "-inf" : "'" + value + "'") + ", "
+                        + (to == null ? "+inf" : "'" + to + "'") + ")";
+            }
+            return field + " " + op.name().toLowerCase(Locale.ROOT) + " '" + value + "'";
+        }
+    }
+
+    /**
+     * AND / OR over several predicates.
+     */
+    static final class Junction extends ContactPredicate {
+        final boolean and;
+        final List<ContactPredicate> parts;
+
+        Junction(boolean and, ContactPredicate[] parts) {
+            if (parts == null || parts.length == 0) {
+                throw new IllegalArgumentException("at least one predicate is required");
+            }
+            for (ContactPredicate p : parts) {
+                if (p == null) {
+                    throw new IllegalArgumentException("predicate cannot be null");
+                }
+            }
+            this.and = and;
+            this.parts = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(parts)));
+        }
+
+        @Override
+        public boolean test(Contact c) {
+            for (ContactPredicate p : parts) {
+                if (p.test(c) != and) {
+                    return !and;
+                }
+            }
+            return and;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("(");
+            for (int i = 0; i < parts.size(); i++) {
+                if (i > 0) {
+                    sb.append(and ? " AND " : " OR ");
+                }
+                sb.append(parts.get(i));
+            }
+            return sb.append(')').toString();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package contact;
+
+import java.util.Comparator;
+
+/**
+ * A filtered read over a ContactService: a predicate plus optional
+ * ordering and limit. Run it with {@link ContactService#query(ContactQuery)}
+ * and inspect the chosen plan with {@link ContactService#explain(ContactQuery)}.
+ *
+ * <pre>
+ * new ContactQuery(and(prefix(Field.PHONE, "415"), prefix(Field.LAST_NAME, "K")))
+ *         .orderBy(Field.LAST_NAME, false)
+ *         .limit(50);
+ * </pre>
+ */
+public class ContactQuery {
+
+    /**
+     * Fields that can be queried, including the (non-updatable) ID.
+     */
+    public enum Field {
+        ID,
+        FIRST_NAME,
+        LAST_NAME,
+        PHONE,
+        ADDRESS;
+
+        /**
+         * Reads this field from a contact.
+         *
+         * @param c contact to read
+         * @return field value
+         */
+        public String get(Contact c) {
+            switch (this) {
+                case ID:         return c.getContactID();
+                case FIRST_NAME: return c.getFirstName();
+                case LAST_NAME:  return c.getLastName();
+                case PHONE:      return c.getPhone();
+                default:         return c.getAddress();
+            }
+        }
+
+        /**
+         * Maps an updatable ContactField to the matching query field.
+         *
+         * @param f contact field
+         * @return query field
+         */
+        public static Field of(ContactField f) {
+            switch (f) {
+                case FIRST_NAME: return FIRST_NAME;
+                case LAST_NAME:  return LAST_NAME;
+                case PHONE:      return PHONE;
+                default:         return ADDRESS;
+            }
+        }
+    }
+
+    private final ContactPredicate where;
+    private Field orderBy;
+    private boolean descending;
+    private int limit = Integer.MAX_VALUE;
+
+    /**
+     * Creates a query.
+     *
+     * @param where condition contacts must satisfy
+     * @throws IllegalArgumentException if where is null
+     */
+    public ContactQuery(ContactPredicate where) {
+        if (where == null) {
+            throw new IllegalArgumentException("predicate cannot be null");
+        }
+        this.where = where;
+    }
+
+    /**
+     * Sorts results by a field.
+     *
+     * @param field sort key
+     * @param descending true for descending order
+     * @return this query
+     */
+    public ContactQuery orderBy(Field field, boolean descending) {
+        if (field == null) {
+            throw new IllegalArgumentException("field cannot be null");
+        }
+        this.orderBy = field;
+        this.descending = descending;
+        return this;
+    }
+
+    /**
+     * Caps the number of results.
+     *
+     * @param limit maximum number of contacts to return (positive)
+     * @return this query
+     */
+    public ContactQuery limit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    public ContactPredicate getWhere() {return where;}
+    public Field getOrderBy() {return orderBy;}
+    public boolean isDescending() {return descending;}
+    public int getLimit() {return limit;}
+
+    Comparator<Contact> comparator() {
+        if (orderBy == null) {
+            return null;
+        }
+        Field f = orderBy;
+        Comparator<Contact> cmp = Comparator.comparing(f::get);
+        cmp = cmp.thenComparing(Contact::getContactID); // stable, deterministic order
+        return descending ? cmp.reversed() : cmp;
+    }
+}
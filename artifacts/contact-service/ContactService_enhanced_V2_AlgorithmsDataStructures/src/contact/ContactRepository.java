@@ -0,0 +1,131 @@
+package contact;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Backend-neutral access to a set of contacts.
+ *
+ * Every implementation follows the rules of {@link ContactService}: IDs are
+ * unique, new contacts must pass Contact validation, and a missing ID is an
+ * IllegalArgumentException rather than a null. Contacts handed out may be
+ * copies, so changes must go through {@link #update} to be kept.
+ * Implementations are thread-safe.
+ *
+ * {@link ContactRepositoryKit} checks these rules and runs the same
+ * throughput and latency scenarios against every implementation.
+ */
+public interface ContactRepository extends AutoCloseable {
+
+    /**
+     * Adds a new contact.
+     *
+     * @param contact contact to add
+     * @throws IllegalArgumentException if the contact is null or the ID already exists
+     */
+    void add(Contact contact);
+
+    /**
+     * Adds several contacts at once. Either all are added or, if any one is
+     * rejected, none are.
+     *
+     * @param contacts contacts to add
+     * @throws IllegalArgumentException if the list or a contact is null, or an ID
+     *         repeats or already exists
+     */
+    void addAll(List<Contact> contacts);
+
+    /**
+     * Returns a contact by ID.
+     *
+     * @param id contact ID
+     * @return contact
+     * @throws IllegalArgumentException if the ID is null or not found
+     */
+    Contact get(String id);
+
+    /**
+     * Updates one field of a contact.
+     *
+     * @param id contact ID
+     * @param field field to change
+     * @param value new value, validated by the field's setter
+     * @throws IllegalArgumentException if the ID is not found or the value is invalid
+     */
+    void update(String id, ContactField field, String value);
+
+    /**
+     * Deletes a contact by ID.
+     *
+     * @param id contact ID to delete
+     * @throws IllegalArgumentException if the ID is null or not found
+     */
+    void delete(String id);
+
+    /**
+     * @return number of contacts
+     */
+    int size();
+
+    /**
+     * Visits every contact once, in no particular order.
+     *
+     * @param action called for each contact
+     */
+    void forEach(Consumer<? super Contact> action);
+
+    /**
+     * @return every contact, in no particular order
+     */
+    default List<Contact> getAll() {
+        List<Contact> all = new ArrayList<>(size());
+        forEach(all::add);
+        return all;
+    }
+
+    /**
+     * Runs a query with a single pass over {@link #forEach}. Ordered queries
+     * with a limit keep only the best {@code limit} rows in a bounded heap.
+     * Backends with indexes override this.
+     *
+     * @param query filter, ordering and limit
+     * @return matching contacts
+     * @throws IllegalArgumentException if query is null
+     */
+    default List<Contact> query(ContactQuery query) {
+        if (query == null) {
+            throw new IllegalArgumentException("query cannot be null");
+        }
+        ContactPredicate where = query.getWhere();
+        Comparator<Contact> order = query.comparator();
+        int limit = query.getLimit();
+
+        if (order != null && limit != Integer.MAX_VALUE) {
+            QueryPlanner.TopK top = new QueryPlanner.TopK(order, limit);
+            forEach(c -> {
+                if (where.test(c)) {
+                    top.offer(c);
+                }
+            });
+            return top.sorted();
+        }
+        List<Contact> out = new ArrayList<>();
+        forEach(c -> {
+            if (out.size() < limit && where.test(c)) {
+                out.add(c);
+            }
+        });
+        if (order != null) {
+            out.sort(order);
+        }
+        return out;
+    }
+
+    /**
+     * Releases files and other resources. The repository cannot be used afterwards.
+     */
+    @Override
+    void close();
+}
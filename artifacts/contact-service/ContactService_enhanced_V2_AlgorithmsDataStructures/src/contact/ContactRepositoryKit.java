@@ -0,0 +1,354 @@
+package contact;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Conformance checks and performance scenarios shared by every
+ * {@link ContactRepository} implementation.
+ *
+ * The checks pin down the semantics of {@link ContactService}: duplicate IDs
+ * are rejected, unknown IDs raise IllegalArgumentException, invalid values
+ * leave the contact unchanged, bulk adds are all-or-nothing, and persistent
+ * backends return the same contents after a reopen. The scenarios then time
+ * the same bulk load, insert, lookup, update, scan and delete workload on
+ * each backend.
+ *
+ * Run with {@code java contact.ContactRepositoryKit [--records N] [--ops N]
+ * [--backends memory,text,binary,embedded,tiered]}; the exit code is 1 if any
+ * check fails.
+ */
+public final class ContactRepositoryKit {
+
+    /**
+     * A repository implementation under test.
+     */
+    public static final class Backend {
+        private final String name;
+        private final boolean persistent;
+        private final Function<Path, ContactRepository> opener;
+
+        /**
+         * @param name short name used in reports and on the command line
+         * @param persistent true if contents must survive close and reopen
+         * @param opener opens the repository kept in the given directory
+         */
+        public Backend(String name, boolean persistent, Function<Path, ContactRepository> opener) {
+            this.name = name;
+            this.persistent = persistent;
+            this.opener = opener;
+        }
+
+        public String getName() {return name;}
+        public boolean isPersistent() {return persistent;}
+
+        ContactRepository open(Path dir) {
+            return opener.apply(dir);
+        }
+    }
+
+    /**
+     * @return the backends shipped with the service
+     */
+    public static List<Backend> standardBackends() {
+        return List.of(
+                new Backend("memory", false, dir -> new InMemoryContactRepository()),
+                new Backend("text", true, dir -> new TextFileContactRepository(new ContactStorage(dir.resolve("contacts.txt")))),
+                new Backend("binary", true, dir -> new BinaryFileContactRepository(dir.resolve("contacts.log"))),
+                new Backend("embedded", true, dir -> new EmbeddedContactRepository(dir.resolve("contacts.db"))),
+                // Small hot tier so the scenarios exercise demotion and promotion
+                new Backend("tiered", false, dir -> new TieredContactRepository(1_000)));
+    }
+
+    private ContactRepositoryKit() {}
+
+    public static void main(String[] args) throws IOException {
+        int records = 20_000;
+        int ops = 1_000;
+        Set<String> selected = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--records":  records = Integer.parseInt(args[++i]); break;
+                case "--ops":      ops = Integer.parseInt(args[++i]); break;
+                case "--backends": selected = Set.of(args[++i].split(",")); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        int failures = 0;
+        for (Backend backend : standardBackends()) {
+            if (selected != null && !selected.contains(backend.getName())) {
+                continue;
+            }
+            System.out.println("== " + backend.getName());
+            List<String> failed = checkConformance(backend);
+            System.out.println(failed.isEmpty() ? "conformance: all checks passed" : "conformance: " + failed.size() + " failed");
+            for (String f : failed) {
+                System.out.println("  FAIL " + f);
+            }
+            failures += failed.size();
+            runScenarios(backend, records, ops);
+        }
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    // ---- conformance ----
+
+    /**
+     * Runs every conformance check against a fresh repository in a
+     * temporary directory.
+     *
+     * @param backend implementation to check
+     * @return one message per failed check; empty if all passed
+     * @throws IOException if the temporary directory cannot be managed
+     */
+    public static List<String> checkConformance(Backend backend) throws IOException {
+        List<String> failed = new ArrayList<>();
+        Path dir = Files.createTempDirectory("repo-kit-" + backend.getName());
+        try {
+            ContactRepository repo = backend.open(dir);
+            try {
+                runChecks(repo, failed);
+            } finally {
+                repo.close();
+            }
+            if (backend.isPersistent()) {
+                checkReopen(backend, dir, failed);
+            }
+        } catch (RuntimeException ex) {
+            failed.add("unexpected " + ex);
+        } finally {
+            deleteTree(dir);
+        }
+        return failed;
+    }
+
+    private static void runChecks(ContactRepository repo, List<String> failed) {
+        // In-memory backends keep the object they are given, so each add gets its own copy
+        Contact a = new Contact("A1", "Ann", "Lee", "4155550101", "1 Main St");
+        Contact b = new Contact("B2", "Bob", "Kim", "2125550102", "2 Oak Ave");
+
+        repo.add(copy(a));
+        check(failed, "add then get", sameFields(repo.get("A1"), a));
+        check(failed, "size after add", repo.size() == 1);
+
+        expectRejected(failed, "duplicate ID", () -> repo.add(new Contact("A1", "Dup", "Dup", "1111111111", "dup")));
+        check(failed, "duplicate leaves original", sameFields(repo.get("A1"), a) && repo.size() == 1);
+        expectRejected(failed, "null contact", () -> repo.add(null));
+
+        expectRejected(failed, "get unknown ID", () -> repo.get("nope"));
+        expectRejected(failed, "get null ID", () -> repo.get(null));
+        expectRejected(failed, "update unknown ID", () -> repo.update("nope", ContactField.FIRST_NAME, "X"));
+        expectRejected(failed, "delete unknown ID", () -> repo.delete("nope"));
+        expectRejected(failed, "delete null ID", () -> repo.delete(null));
+
+        expectRejected(failed, "invalid phone", () -> repo.update("A1", ContactField.PHONE, "12ab"));
+        expectRejected(failed, "name too long", () -> repo.update("A1", ContactField.FIRST_NAME, "Bartholomew"));
+        check(failed, "invalid update leaves contact", sameFields(repo.get("A1"), a));
+
+        repo.update("A1", ContactField.LAST_NAME, "Park");
+        repo.update("A1", ContactField.ADDRESS, "");
+        Contact updated = repo.get("A1");
+        check(failed, "update visible", updated.getLastName().equals("Park") && updated.getAddress().isEmpty());
+
+        List<Contact> badBatch = List.of(b, new Contact("A1", "Dup", "Dup", "1111111111", "dup"));
+        expectRejected(failed, "bulk add with existing ID", () -> repo.addAll(badBatch));
+        check(failed, "rejected bulk add is atomic", repo.size() == 1);
+        expectRejected(failed, "bulk add with repeated ID", () -> repo.addAll(List.of(b, b)));
+        check(failed, "repeated-ID bulk add is atomic", repo.size() == 1);
+
+        List<Contact> batch = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            batch.add(ContactLoadGenerator.syntheticContact(i, ThreadLocalRandom.current()));
+        }
+        repo.addAll(batch);
+        check(failed, "bulk add", repo.size() == 501 && sameFields(repo.get(batch.get(250).getContactID()), batch.get(250)));
+
+        Set<String> seen = new HashSet<>();
+        int[] visits = {0};
+        repo.forEach(c -> {
+            visits[0]++;
+            seen.add(c.getContactID());
+        });
+        check(failed, "forEach visits each contact once", visits[0] == 501 && seen.size() == 501);
+        check(failed, "getAll", repo.getAll().size() == 501);
+
+        ContactQuery top = new ContactQuery(ContactPredicate.all()).orderBy(ContactQuery.Field.LAST_NAME, false).limit(10);
+        List<Contact> expected = repo.getAll();
+        expected.sort(top.comparator());
+        check(failed, "ordered query with limit", ids(repo.query(top)).equals(ids(expected.subList(0, 10))));
+
+        repo.delete("A1");
+        check(failed, "delete", repo.size() == 500);
+        expectRejected(failed, "get deleted ID", () -> repo.get("A1"));
+        expectRejected(failed, "delete twice", () -> repo.delete("A1"));
+        repo.add(copy(a));
+        check(failed, "re-add deleted ID", sameFields(repo.get("A1"), a));
+    }
+
+    private static void checkReopen(Backend backend, Path dir, List<String> failed) {
+        List<Contact> before;
+        ContactRepository repo = backend.open(dir);
+        try {
+            repo.update("A1", ContactField.FIRST_NAME, "Anna");
+            repo.update("A1", ContactField.ADDRESS, ""); // blanked fields must survive a reopen too
+            repo.delete(ContactLoadGenerator.idOf(7));
+            before = repo.getAll();
+        } finally {
+            repo.close();
+        }
+        repo = backend.open(dir);
+        try {
+            List<Contact> after = repo.getAll();
+            Comparator<Contact> byId = Comparator.comparing(Contact::getContactID);
+            before.sort(byId);
+            after.sort(byId);
+            boolean same = before.size() == after.size();
+            for (int i = 0; same && i < before.size(); i++) {
+                same = sameFields(before.get(i), after.get(i));
+            }
+            check(failed, "contents survive reopen", same);
+        } finally {
+            repo.close();
+        }
+    }
+
+    // ---- performance ----
+
+    /**
+     * Times the standard workload on a fresh repository and prints one line
+     * per scenario.
+     *
+     * @param backend implementation to measure
+     * @param records contacts loaded in bulk before the single-operation scenarios
+     * @param ops operations per single-operation scenario
+     * @throws IOException if the temporary directory cannot be managed
+     */
+    public static void runScenarios(Backend backend, int records, int ops) throws IOException {
+        Path dir = Files.createTempDirectory("repo-kit-" + backend.getName());
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        try (ContactRepository repo = backend.open(dir)) {
+            List<Contact> initial = new ArrayList<>(records);
+            for (int i = 0; i < records; i++) {
+                initial.add(ContactLoadGenerator.syntheticContact(i, rnd));
+            }
+            long t0 = System.nanoTime();
+            repo.addAll(initial);
+            report("bulk load", records, System.nanoTime() - t0, null);
+
+            LatencyHistogram h = new LatencyHistogram();
+            t0 = System.nanoTime();
+            for (int i = 0; i < ops; i++) {
+                Contact c = ContactLoadGenerator.syntheticContact(records + i, rnd);
+                long s = System.nanoTime();
+                repo.add(c);
+                h.record(System.nanoTime() - s);
+            }
+            report("insert", ops, System.nanoTime() - t0, h);
+
+            h = new LatencyHistogram();
+            t0 = System.nanoTime();
+            for (int i = 0; i < ops; i++) {
+                String id = ContactLoadGenerator.idOf(rnd.nextInt(records));
+                long s = System.nanoTime();
+                repo.get(id);
+                h.record(System.nanoTime() - s);
+            }
+            report("lookup", ops, System.nanoTime() - t0, h);
+
+            h = new LatencyHistogram();
+            t0 = System.nanoTime();
+            for (int i = 0; i < ops; i++) {
+                String id = ContactLoadGenerator.idOf(rnd.nextInt(records));
+                long s = System.nanoTime();
+                repo.update(id, ContactField.PHONE, ContactLoadGenerator.syntheticContact(i, rnd).getPhone());
+                h.record(System.nanoTime() - s);
+            }
+            report("update", ops, System.nanoTime() - t0, h);
+
+            int[] scanned = {0};
+            t0 = System.nanoTime();
+            repo.forEach(c -> scanned[0]++);
+            report("scan", scanned[0], System.nanoTime() - t0, null);
+
+            h = new LatencyHistogram();
+            t0 = System.nanoTime();
+            for (int i = 0; i < ops; i++) {
+                String id = ContactLoadGenerator.idOf(records + i);
+                long s = System.nanoTime();
+                repo.delete(id);
+                h.record(System.nanoTime() - s);
+            }
+            report("delete", ops, System.nanoTime() - t0, h);
+        } finally {
+            deleteTree(dir);
+        }
+    }
+
+    // ---- private helpers ----
+
+    private static void report(String scenario, int ops, long nanos, LatencyHistogram h) {
+        System.out.printf("  %-10s %,12.0f ops/s%s%n", scenario, ops / (nanos / 1e9),
+                h == null ? "" : "  " + h.summary());
+    }
+
+    private static void check(List<String> failed, String name, boolean ok) {
+        if (!ok) {
+            failed.add(name);
+        }
+    }
+
+    private static void expectRejected(List<String> failed, String name, Runnable action) {
+        try {
+            action.run();
+            failed.add(name + ": no IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // required behavior
+        } catch (RuntimeException ex) {
+            failed.add(name + ": " + ex);
+        }
+    }
+
+    private static Contact copy(Contact c) {
+        return new Contact(c.getContactID(), c.getFirstName(), c.getLastName(), c.getPhone(), c.getAddress());
+    }
+
+    private static boolean sameFields(Contact x, Contact y) {
+        if (!x.getContactID().equals(y.getContactID())) {
+            return false;
+        }
+        for (ContactField f : ContactField.values()) {
+            if (!f.get(x).equals(f.get(y))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<String> ids(List<Contact> contacts) {
+        List<String> ids = new ArrayList<>(contacts.size());
+        for (Contact c : contacts) {
+            ids.add(c.getContactID());
+        }
+        return ids;
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package contact;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Full-scan substring search over column-packed contact data.
+ *
+ * Each field is stored as one fixed-width Latin-1 byte column (10 bytes
+ * for ID, names and phone, 30 for address, zero-padded), so a search reads
+ * contiguous memory instead of chasing pointers through Contact and String
+ * objects. Rows are split across cores with fork-join, and each chunk is
+ * scanned with SIMD byte matching when the vector module is available.
+ *
+ * The engine is a snapshot: build a new one after the data changes.
+ */
+public class ContactScanEngine {
+
+    private static final int CHUNK_ROWS = 32 * 1024;
+
+    private final Contact[] rows;
+    private final Map<ContactQuery.Field, byte[]> columns = new EnumMap<>(ContactQuery.Field.class);
+    private final Map<ContactQuery.Field, Integer> widths = new EnumMap<>(ContactQuery.Field.class);
+    // Per field, rows whose value has non-Latin-1 text; their packed cells are
+    // zeroed and the value is checked with String.contains instead
+    private final Map<ContactQuery.Field, int[]> overflowRows = new EnumMap<>(ContactQuery.Field.class);
+    private final ByteMatcher matcher;
+
+    /**
+     * Packs a snapshot of contacts into columns.
+     *
+     * @param contacts contacts to index
+     * @throws IllegalArgumentException if contacts is null
+     */
+    public ContactScanEngine(Collection<Contact> contacts) {
+        this(contacts, ByteMatcher.best());
+    }
+
+    ContactScanEngine(Collection<Contact> contacts, ByteMatcher matcher) {
+        if (contacts == null) {
+            throw new IllegalArgumentException("contacts cannot be null");
+        }
+        this.matcher = matcher;
+        this.rows = contacts.toArray(new Contact[0]);
+        for (ContactQuery.Field f : ContactQuery.Field.values()) {
+            int width = f == ContactQuery.Field.ADDRESS ? 30 : 10;
+            widths.put(f, width);
+            columns.put(f, new byte[rows.length * width]);
+        }
+
+        for (ContactQuery.Field f : ContactQuery.Field.values()) {
+            int width = widths.get(f);
+            byte[] col = columns.get(f);
+            List<Integer> overflow = new ArrayList<>();
+            for (int r = 0; r < rows.length; r++) {
+                String v = f.get(rows[r]);
+                for (int i = 0; i < v.length(); i++) {
+                    char ch = v.charAt(i);
+                    if (ch > 0xFF) {
+                        overflow.add(r);
+                        Arrays.fill(col, r * width, r * width + width, (byte) 0);
+                        break;
+                    }
+                    col[r * width + i] = (byte) ch;
+                }
+            }
+            overflowRows.put(f, overflow.stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    /**
+     * @return number of rows in the snapshot
+     */
+    public int size() {return rows.length;}
+
+    /**
+     * @return name of the byte matcher in use, e.g. "vector(256-bit)" or "scalar"
+     */
+    public String getMatcherName() {return matcher.name();}
+
+    /**
+     * Returns every contact whose field contains the given text, in snapshot order.
+     *
+     * @param field field to search
+     * @param text substring to find (case-sensitive)
+     * @return matching contacts
+     * @throws IllegalArgumentException if field or text is null, or text is empty
+     */
+    public List<Contact> search(ContactQuery.Field field, String text) {
+        int[] hits = searchRows(field, text);
+        List<Contact> out = new ArrayList<>(hits.length);
+        for (int r : hits) {
+            out.add(rows[r]);
+        }
+        return out;
+    }
+
+    /**
+     * Returns the snapshot row numbers whose field contains the given text.
+     *
+     * @param field field to search
+     * @param text substring to find (case-sensitive)
+     * @return sorted row numbers
+     * @throws IllegalArgumentException if field or text is null, or text is empty
+     */
+    public int[] searchRows(ContactQuery.Field field, String text) {
+        if (field == null || text == null || text.isEmpty()) {
+            throw new IllegalArgumentException("field and non-empty text are required");
+        }
+        int width = widths.get(field);
+        int[] packedHits;
+        if (text.length() > width || !isLatin1(text)) {
+            packedHits = new int[0]; // cannot occur in the packed column
+        } else {
+            byte[] needle = text.getBytes(StandardCharsets.ISO_8859_1);
+            packedHits = ForkJoinPool.commonPool().invoke(new Chunk(columns.get(field), width, needle, 0, rows.length));
+        }
+        int[] overflow = overflowRows.get(field);
+        if (overflow.length == 0) {
+            return packedHits;
+        }
+        // Only this field's overflow rows: their packed cells are zero, so no row is reported twice
+        int[] extra = Arrays.stream(overflow).filter(r -> field.get(rows[r]).contains(text)).toArray();
+        int[] all = Arrays.copyOf(packedHits, packedHits.length + extra.length);
+        System.arraycopy(extra, 0, all, packedHits.length, extra.length);
+        Arrays.sort(all);
+        return all;
+    }
+
+    /**
+     * Scans one range of rows, splitting it further when large.
+     */
+    private final class Chunk extends RecursiveTask<int[]> {
+        private static final long serialVersionUID = 1L;
+        private final byte[] column;
+        private final int width;
+        private final byte[] needle;
+        private final int fromRow;
+        private final int toRow;
+
+        Chunk(byte[] column, int width, byte[] needle, int fromRow, int toRow) {
+            this.column = column;
+            this.width = width;
+            this.needle = needle;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (toRow - fromRow > CHUNK_ROWS) {
+                int mid = (fromRow + toRow) >>> 1;
+                Chunk left = new Chunk(column, width, needle, fromRow, mid);
+                left.fork();
+                int[] right = new Chunk(column, width, needle, mid, toRow).compute();
+                int[] l = left.join();
+                int[] merged = Arrays.copyOf(l, l.length + right.length);
+                System.arraycopy(right, 0, merged, l.length, right.length);
+                return merged;
+            }
+
+            int[][] hits = {new int[16]};
+            int[] count = {0};
+            int[] lastRow = {-1};
+            matcher.scan(column, fromRow * width, toRow * width, needle, pos -> {
+                int row = pos / width;
+                // Reject matches that run past the end of the row into the next one
+                if (pos - row * width + needle.length <= width && row != lastRow[0]) {
+                    if (count[0] == hits[0].length) {
+                        hits[0] = Arrays.copyOf(hits[0], count[0] * 2);
+                    }
+                    hits[0][count[0]++] = row;
+                    lastRow[0] = row;
+                }
+            });
+            return Arrays.copyOf(hits[0], count[0]);
+        }
+    }
+
+    private static boolean isLatin1(String v) {
+        for (int i = 0; i < v.length(); i++) {
+            if (v.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Measures scan throughput on synthetic data.
+     * Usage: {@code java contact.ContactScanEngine [rows] [text]}, or
+     * {@code ./run-vector.sh contact.ContactScanEngine [rows] [text]} to compare with SIMD
+     *
+     * @param args optional row count (default 5,000,000) and search text (default "Oak")
+     */
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        String text = args.length > 1 ? args[1] : "Oak";
+        List<Contact> data = new ArrayList<>(n);
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        for (int i = 0; i < n; i++) {
+            data.add(ContactLoadGenerator.syntheticContact(i, rnd));
+        }
+        for (ContactScanEngine engine : new ContactScanEngine[] {
+                new ContactScanEngine(data), new ContactScanEngine(data, new ByteMatcher.Scalar())}) {
+            long bytes = (long) n * engine.widths.get(ContactQuery.Field.ADDRESS);
+            int hits = 0;
+            long best = Long.MAX_VALUE;
+            for (int run = 0; run < 10; run++) {
+                long t0 = System.nanoTime();
+                hits = engine.searchRows(ContactQuery.Field.ADDRESS, text).length;
+                best = Math.min(best, System.nanoTime() - t0);
+            }
+            System.out.printf("%-18s %d rows, %d hits, %.1f ms, %.2f GB/s%n", engine.getMatcherName(), n, hits,
+                    best / 1e6, bytes / (double) best);
+        }
+    }
+}
@@ -1,33 +1,267 @@
 package contact;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
 
 /**
  * Provides business logic for managing Contact objects.
  *
  * This service enforces validation, uniqueness, and consistent
  * behavior for adding, updating, and deleting contacts.
+ *
+ * Lookups and changes are synchronized on the service, so a background
+ * thread (e.g. replication) can take a consistent snapshot while the owning
+ * thread keeps making changes. Aggregate reads do not take the lock.
  */
 public class ContactService {
 
-    private HashMap<String, Contact> contacts = new HashMap<>();
+    // Concurrent so snapshots can iterate it without the lock; writes still take the lock
+    private ConcurrentHashMap<String, Contact> contacts = new ConcurrentHashMap<>();
+    private final List<ContactSnapshot> openSnapshots = new ArrayList<>();
+    private long version;
+    private final List<ContactListener> listeners = new CopyOnWriteArrayList<>();
+    private ContactIdFilter idFilter;      // null when disabled
+    private double idFilterRate;
+    private final Map<ContactQuery.Field, FieldIndex> indexes = new EnumMap<>(ContactQuery.Field.class);
+    private QueryPlanner planner = new QueryPlanner(contacts, indexes);
+    private final Map<String, ContactAggregate> aggregates = new ConcurrentHashMap<>();
+    private final GroupCountAggregate byAreaCode = GroupCountAggregate.byAreaCode();
+    private final GroupCountAggregate byLastInitial = GroupCountAggregate.byLastInitial();
+    private AutocompleteIndex autocomplete; // null when disabled
+    private PhoneticIndex phonetic;         // null when disabled
+
+	/**
+	 * Creates an empty service with the built-in area-code and
+	 * last-initial aggregates registered.
+	 */
+    public ContactService() {
+        registerAggregate(byAreaCode);
+        registerAggregate(byLastInitial);
+    }
+
+	/**
+	 * Registers a listener that is notified of every change.
+	 *
+	 * @param listener listener to add
+	 * @throws IllegalArgumentException if the listener is null
+	 */
+    public void addListener(ContactListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener cannot be null");
+        }
+        listeners.add(listener);
+    }
+
+	/**
+	 * Unregisters a listener.
+	 *
+	 * @param listener listener to remove
+	 */
+    public void removeListener(ContactListener listener) {
+        listeners.remove(listener);
+    }
+
+	/**
+	 * Turns on the ID filter: lookups and deletes of IDs that are definitely
+	 * not stored fail without touching the map. The filter is rebuilt from
+	 * the current contacts and kept up to date on every change.
+	 *
+	 * @param falsePositiveRate target rate of absent IDs that still reach the map, in (0, 1)
+	 * @throws IllegalArgumentException if the rate is out of range
+	 */
+    public synchronized void enableIdFilter(double falsePositiveRate) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+        idFilterRate = falsePositiveRate;
+        rebuildIdFilter(contacts.size());
+    }
+
+	/**
+	 * Returns the ID filter, e.g. to persist it next to the contacts file.
+	 *
+	 * @return the filter, or null if disabled
+	 */
+    public synchronized ContactIdFilter getIdFilter() {
+        return idFilter;
+    }
+
+	/**
+	 * Turns on prefix autocomplete over IDs, first names and last names.
+	 * The index is built from the current contacts and kept up to date on
+	 * every change. Does nothing if it is already on.
+	 */
+    public synchronized void enableAutocomplete() {
+        if (autocomplete == null) {
+            autocomplete = new AutocompleteIndex();
+            autocomplete.contactsLoaded(getAllContacts());
+            addListener(autocomplete);
+        }
+    }
+
+	/**
+	 * Suggests contacts whose ID, first name or last name starts with the
+	 * typed text, ignoring case. Results are ordered by the matching value,
+	 * then by ID, and each contact appears once.
+	 *
+	 * @param prefix text typed so far (may be empty)
+	 * @param limit maximum number of suggestions, 1 to 10
+	 * @return matching contacts, best first
+	 * @throws IllegalArgumentException if prefix is null or limit is out of range
+	 * @throws IllegalStateException if autocomplete has not been enabled
+	 */
+    public synchronized List<Contact> autocomplete(String prefix, int limit) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("prefix cannot be null");
+        }
+        if (limit < 1 || limit > AutocompleteIndex.MAX_SUGGESTIONS) {
+            throw new IllegalArgumentException("limit must be between 1 and " + AutocompleteIndex.MAX_SUGGESTIONS);
+        }
+        if (autocomplete == null) {
+            throw new IllegalStateException("autocomplete is not enabled");
+        }
+        return autocomplete.suggest(prefix, limit);
+    }
+
+	/**
+	 * Turns on sound-alike search over first and last names. Phonetic codes
+	 * are computed for every current contact now and for each added or
+	 * renamed contact as the change is made. Does nothing if it is already on.
+	 */
+    public synchronized void enablePhoneticSearch() {
+        if (phonetic == null) {
+            phonetic = new PhoneticIndex();
+            phonetic.contactsLoaded(getAllContacts());
+            addListener(phonetic);
+        }
+    }
+
+	/**
+	 * Finds contacts whose first or last name sounds like a name, for names
+	 * taken down by ear ("Smyth" finds "Smith"). Results are ranked by how
+	 * closely both the sound and the spelling match.
+	 *
+	 * @param name name as heard
+	 * @param limit maximum number of results
+	 * @return matching contacts, best first
+	 * @throws IllegalArgumentException if name is null or limit is less than 1
+	 * @throws IllegalStateException if phonetic search has not been enabled
+	 */
+    public synchronized List<Contact> soundsLike(String name, int limit) {
+        if (name == null) {
+            throw new IllegalArgumentException("name cannot be null");
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        if (phonetic == null) {
+            throw new IllegalStateException("phonetic search is not enabled");
+        }
+        return phonetic.match(name, limit);
+    }
 
 	/**
 	 * Loads a full list of contacts into the service, replacing existing data.
+	 * Either every contact is loaded or, on the first bad record, nothing
+	 * changes.
 	 *
 	 * @param loaded list of contacts to load
-	 * @throws IllegalArgumentException if the list is null
+	 * @throws IllegalArgumentException if the list is null, contains null, or has duplicate IDs
 	 */
     public void loadAll(List<Contact> loaded) {
-        if (loaded == null) {
-            throw new IllegalArgumentException("loaded contacts cannot be null");
+        loadAll(loaded, null);
+    }
+
+	/**
+	 * Loads contacts and adopts a previously saved ID filter instead of
+	 * rebuilding it. The filter must have been saved for exactly this data;
+	 * it also enables filtering at the saved false-positive rate.
+	 *
+	 * @param loaded list of contacts to load
+	 * @param savedFilter filter saved alongside the data, or null to rebuild
+	 * @throws IllegalArgumentException if the list is null, contains null, or has duplicate IDs
+	 */
+    public void loadAll(List<Contact> loaded, ContactIdFilter savedFilter) {
+        ContactEvents.LoadAll event = new ContactEvents.LoadAll();
+        event.begin();
+        BulkLoadReport report = new BulkLoadReport();
+        try {
+            ConcurrentHashMap<String, Contact> map = prepare(loaded, report);
+            if (!report.isClean()) {
+                if (report.getRejected().get(0).getReason() == BulkLoadReport.Reason.NULL_RECORD) {
+                    throw new IllegalArgumentException("contact cannot be null");
+                }
+                throw new IllegalArgumentException("contact ID already exists");
+            }
+            int count = map.size(); // before install: once live, the map takes concurrent adds
+            install(map, savedFilter);
+            report.setLoaded(count);
+        } catch (RuntimeException ex) {
+            event.fail(ex);
+            throw ex;
+        } finally {
+            commit(event, loaded, report);
+        }
+    }
+
+	/**
+	 * Replaces all data with the non-null, non-duplicate records of a list.
+	 *
+	 * Null records and duplicate IDs are detected in parallel, and the new
+	 * map is built to its final size before being swapped in, so readers
+	 * see either the old data or the new data, never a mix. Bad records are
+	 * skipped and reported instead of aborting the load; for duplicates the
+	 * first occurrence wins. Like {@link #loadAll(List)}, it accepts any
+	 * field values the Contact setters accept.
+	 *
+	 * @param loaded list of contacts to load
+	 * @return which records were loaded and which were rejected
+	 * @throws IllegalArgumentException if the list is null
+	 */
+    public BulkLoadReport bulkLoad(List<Contact> loaded) {
+        ContactEvents.LoadAll event = new ContactEvents.LoadAll();
+        event.begin();
+        BulkLoadReport report = new BulkLoadReport();
+        try {
+            ConcurrentHashMap<String, Contact> map = prepare(loaded, report);
+            int count = map.size(); // before install: once live, the map takes concurrent adds
+            install(map, null);
+            report.setLoaded(count);
+            return report;
+        } catch (RuntimeException ex) {
+            event.fail(ex);
+            throw ex;
+        } finally {
+            commit(event, loaded, report);
+        }
+    }
+
+    private synchronized void install(ConcurrentHashMap<String, Contact> map, ContactIdFilter savedFilter) {
+        for (ContactSnapshot snap : openSnapshots) {
+            snap.seal(contacts); // keeps its view of the data being replaced
         }
-        contacts.clear();
-        // Reuse addContact to enforce uniqueness and null checks
-        for (Contact c : loaded) {
-            addContact(c);
+        version++;
+        contacts = map;
+        planner = new QueryPlanner(contacts, indexes);
+        if (savedFilter != null && savedFilter.size() == contacts.size()) {
+            idFilter = savedFilter;
+            idFilterRate = savedFilter.getFalsePositiveRate();
+        } else if (idFilterRate > 0) {
+            rebuildIdFilter(contacts.size());
+        }
+        if (!listeners.isEmpty()) {
+            List<Contact> all = getAllContacts();
+            for (ContactListener l : listeners) {
+                l.contactsLoaded(all);
+            }
         }
     }
 
@@ -36,32 +270,45 @@ public class ContactService {
 	 *
 	 * @return list of contacts
 	 */
-    public List<Contact> getAllContacts() {
+    public synchronized List<Contact> getAllContacts() {
         return new ArrayList<>(contacts.values());
     }
 
+	/**
+	 * Returns the number of stored contacts.
+	 *
+	 * @return contact count
+	 */
+    public synchronized int size() {
+        return contacts.size();
+    }
+
 	/**
 	 * Adds a new contact to the service.
 	 *
 	 * @param contact contact to add
 	 * @throws IllegalArgumentException if the contact is null or the ID already exists
 	 */
-    public void addContact(Contact contact) {
-		// Throw exception if the contact info is null
-        if (contact == null) {
-            throw new IllegalArgumentException("contact cannot be null");
-        } 
-		
-		// Extract the ID from the contact object to use as a key
-		String id = contact.getContactID();
-		
-		// Throw exception if the contact ID exists in the HashMap
-		if (contacts.containsKey(id)){
-			throw new IllegalArgumentException("contact ID already exists");
-		}
-		
-		// Save the contact successfully
-        contacts.put(id, contact);
+    public synchronized void addContact(Contact contact) {
+        ContactEvents.Add event = new ContactEvents.Add();
+        event.begin();
+        try {
+            if (contact != null && !openSnapshots.isEmpty()) {
+                beforeChange(contact.getContactID());
+            }
+            put(contact);
+            for (ContactListener l : listeners) {
+                l.contactAdded(contact);
+            }
+        } catch (RuntimeException ex) {
+            event.fail(ex);
+            throw ex;
+        } finally {
+            if (event.shouldCommit()) {
+                event.id = contact == null ? null : contact.getContactID();
+                event.commit();
+            }
+        }
     }
 
 	/**
@@ -70,13 +317,20 @@ public class ContactService {
 	 * @param id contact ID to delete
 	 * @throws IllegalArgumentException if the ID is null, empty, or not found
 	 */
-    public void deleteContact(String id) {
-		// Throw exception if contact ID does not exist
-		if (!contacts.containsKey(id)){
-			throw new IllegalArgumentException("contact ID does not exist");
-		}
-		
-		contacts.remove(id); // Delete the contact object
+    public synchronized void deleteContact(String id) {
+        ContactEvents.Delete event = new ContactEvents.Delete();
+        event.begin();
+        try {
+            delete(id);
+        } catch (RuntimeException ex) {
+            event.fail(ex);
+            throw ex;
+        } finally {
+            if (event.shouldCommit()) {
+                event.id = id;
+                event.commit();
+            }
+        }
     }
 
 	/**
@@ -86,9 +340,9 @@ public class ContactService {
 	 * @param first new first name
 	 * @throws IllegalArgumentException if the ID is invalid or not found
 	 */
-    public void updateFirstName(String id, String first) {
-        find(id).setFirstName(first);
-	}
+    public synchronized void updateFirstName(String id, String first) {
+        update(id, ContactField.FIRST_NAME, first);
+    }
 	
 	/**
 	 * Updates the last name of a contact by ID.
@@ -97,8 +351,8 @@ public class ContactService {
 	 * @param last new last name
 	 * @throws IllegalArgumentException if the ID is invalid or not found
 	 */
-    public void updateLastName(String id, String last) {
-        find(id).setLastName(last);
+    public synchronized void updateLastName(String id, String last) {
+        update(id, ContactField.LAST_NAME, last);
     }
 	
 	/**
@@ -108,8 +362,8 @@ public class ContactService {
 	 * @param phone new phone number
 	 * @throws IllegalArgumentException if the ID is invalid or not found
 	 */
-    public void updatePhone(String id, String phone) {
-        find(id).setPhone(phone);
+    public synchronized void updatePhone(String id, String phone) {
+        update(id, ContactField.PHONE, phone);
     }
 	
 	/**
@@ -119,8 +373,249 @@ public class ContactService {
 	 * @param address new address
 	 * @throws IllegalArgumentException if the ID is invalid or not found
 	 */
-    public void updateAddress(String id, String address) {
-        find(id).setAddress(address);
+    public synchronized void updateAddress(String id, String address) {
+        update(id, ContactField.ADDRESS, address);
+    }
+
+	/**
+	 * Creates an ordered index on a field so queries with equals, prefix or
+	 * range conditions on it can avoid a full scan. Does nothing if the
+	 * index already exists.
+	 *
+	 * @param field field to index
+	 * @throws IllegalArgumentException if field is null
+	 */
+    public synchronized void createIndex(ContactQuery.Field field) {
+        if (field == null) {
+            throw new IllegalArgumentException("field cannot be null");
+        }
+        if (!indexes.containsKey(field)) {
+            FieldIndex index = new FieldIndex(field, contacts.values());
+            indexes.put(field, index);
+            listeners.add(index);
+        }
+    }
+
+	/**
+	 * Creates indexes on several fields, building them in parallel. Fields
+	 * that already have an index are skipped.
+	 *
+	 * @param fields fields to index
+	 * @throws IllegalArgumentException if fields or any field is null
+	 */
+    public synchronized void createIndexes(ContactQuery.Field... fields) {
+        if (fields == null || Arrays.asList(fields).contains(null)) {
+            throw new IllegalArgumentException("field cannot be null");
+        }
+        // Each index is built by its own task; the map is only read while the lock is held
+        FieldIndex[] built = Arrays.stream(fields).distinct().filter(f -> !indexes.containsKey(f)).parallel()
+                .map(f -> new FieldIndex(f, contacts.values()))
+                .toArray(FieldIndex[]::new);
+        for (FieldIndex index : built) {
+            installIndex(index);
+        }
+    }
+
+	/**
+	 * @return fields that currently have an index
+	 */
+    public synchronized Set<ContactQuery.Field> getIndexedFields() {
+        return indexes.isEmpty() ? EnumSet.noneOf(ContactQuery.Field.class) : EnumSet.copyOf(indexes.keySet());
+    }
+
+	/**
+	 * Adds a prebuilt index, e.g. one restored from disk, replacing any
+	 * index on the same field. The index must match the current contacts.
+	 */
+    synchronized void installIndex(FieldIndex index) {
+        dropIndex(index.getField());
+        indexes.put(index.getField(), index);
+        listeners.add(index);
+    }
+
+	/**
+	 * Returns the live ID-to-contact map for indexes that resolve saved IDs.
+	 * Only valid under the lock and until the next load, which replaces the
+	 * map and notifies listeners.
+	 */
+    synchronized Map<String, Contact> contactMap() {
+        return contacts;
+    }
+
+	/**
+	 * Removes an index created by {@link #createIndex(ContactQuery.Field)}.
+	 *
+	 * @param field indexed field
+	 */
+    public synchronized void dropIndex(ContactQuery.Field field) {
+        FieldIndex index = indexes.remove(field);
+        if (index != null) {
+            listeners.remove(index);
+        }
+    }
+
+	/**
+	 * Returns the contacts matching a query, using the most selective index
+	 * available or a parallel scan.
+	 *
+	 * @param query query to run
+	 * @return matching contacts, ordered and limited as requested
+	 * @throws IllegalArgumentException if query is null
+	 */
+    public synchronized List<Contact> query(ContactQuery query) {
+        if (query == null) {
+            throw new IllegalArgumentException("query cannot be null");
+        }
+        return planner.execute(query);
+    }
+
+	/**
+	 * Describes how {@link #query(ContactQuery)} would run a query.
+	 *
+	 * @param query query to plan
+	 * @return plan, one operator per line
+	 * @throws IllegalArgumentException if query is null
+	 */
+    public synchronized String explain(ContactQuery query) {
+        if (query == null) {
+            throw new IllegalArgumentException("query cannot be null");
+        }
+        return planner.explain(query);
+    }
+
+	/**
+	 * Deletes every contact matching a predicate.
+	 *
+	 * @param where condition
+	 * @return number of contacts deleted
+	 * @throws IllegalArgumentException if where is null
+	 */
+    public synchronized int deleteWhere(ContactPredicate where) {
+        List<Contact> hits = query(new ContactQuery(where));
+        for (Contact c : hits) {
+            deleteContact(c.getContactID());
+        }
+        return hits.size();
+    }
+
+	/**
+	 * Sets one field on every contact matching a predicate. The value is
+	 * validated before anything changes, so either all matches are updated
+	 * or none are.
+	 *
+	 * @param where condition
+	 * @param field field to set
+	 * @param value new value
+	 * @return number of contacts updated
+	 * @throws IllegalArgumentException if an argument is null or the value is invalid
+	 */
+    public synchronized int updateWhere(ContactPredicate where, ContactField field, String value) {
+        if (field == null) {
+            throw new IllegalArgumentException("field cannot be null");
+        }
+        List<Contact> hits = query(new ContactQuery(where));
+        if (!hits.isEmpty()) {
+            // Validate once on a throwaway copy so a bad value fails before any change.
+            // restore, not the constructor: the copy must not fail on the hit's other
+            // fields, which an earlier update may have left blank.
+            Contact first = hits.get(0);
+            field.set(Contact.restore(first.getContactID(), first.getFirstName(), first.getLastName(),
+                    first.getPhone(), first.getAddress()), value);
+        }
+        for (Contact c : hits) {
+            update(c.getContactID(), field, value);
+        }
+        return hits.size();
+    }
+
+	/**
+	 * Registers an aggregate that is kept up to date on every change and
+	 * rebuilt on every {@link #loadAll(List)}. It is built from the current
+	 * contacts immediately.
+	 *
+	 * @param aggregate aggregate to register
+	 * @throws IllegalArgumentException if the aggregate is null or its name is taken
+	 */
+    public synchronized void registerAggregate(ContactAggregate aggregate) {
+        if (aggregate == null) {
+            throw new IllegalArgumentException("aggregate cannot be null");
+        }
+        if (aggregates.putIfAbsent(aggregate.getName(), aggregate) != null) {
+            throw new IllegalArgumentException("aggregate name already registered");
+        }
+        aggregate.rebuild(contacts.values());
+        listeners.add(aggregate);
+    }
+
+	/**
+	 * Returns a registered aggregate. Does not take the service lock.
+	 *
+	 * @param name aggregate name
+	 * @return the aggregate, or null if none is registered under that name
+	 */
+    public ContactAggregate getAggregate(String name) {
+        return aggregates.get(name);
+    }
+
+	/**
+	 * Returns the number of contacts per area code (first 3 digits of the
+	 * phone). Maintained incrementally; does not take the service lock.
+	 *
+	 * @return sorted map of area code to count
+	 */
+    public Map<String, Long> getCountsByAreaCode() {
+        return byAreaCode.getCounts();
+    }
+
+	/**
+	 * Returns the number of contacts per last-name initial. Maintained
+	 * incrementally; does not take the service lock.
+	 *
+	 * @return sorted map of initial to count
+	 */
+    public Map<String, Long> getCountsByLastInitial() {
+        return byLastInitial.getCounts();
+    }
+
+	/**
+	 * Returns the number of contacts without taking the service lock.
+	 *
+	 * @return contact count
+	 */
+    public long getTotalCount() {
+        return byAreaCode.getTotal();
+    }
+
+	/**
+	 * Opens a point-in-time snapshot of all contacts in O(1).
+	 *
+	 * The snapshot keeps the values as they are now, while writers carry on:
+	 * the first change to each contact after this call saves its old values
+	 * for the snapshot. Close it when done so writers stop doing that.
+	 *
+	 * @return snapshot handle
+	 */
+    public synchronized ContactSnapshot snapshot() {
+        ContactSnapshot snap = new ContactSnapshot(this, contacts, version, contacts.size());
+        openSnapshots.add(snap);
+        return snap;
+    }
+
+    synchronized void closeSnapshot(ContactSnapshot snap) {
+        openSnapshots.remove(snap);
+    }
+
+    /**
+     * Checks whether a contact exists without throwing on a miss.
+     *
+     * @param id contact ID
+     * @return true if a contact with this ID exists
+     */
+    public synchronized boolean containsContact(String id) {
+        if (id == null || (idFilter != null && !idFilter.mightContain(id))) {
+            return false;
+        }
+        return contacts.containsKey(id);
     }
 
     /**
@@ -129,14 +624,173 @@ public class ContactService {
 	* @param id contact ID
 	* @return contact
 	*/
-    public Contact getContactById(String id) {
-        return find(id);
+    public synchronized Contact getContactById(String id) {
+        ContactEvents.Lookup event = new ContactEvents.Lookup();
+        event.begin();
+        try {
+            return find(id);
+        } catch (RuntimeException ex) {
+            event.fail(ex);
+            throw ex;
+        } finally {
+            if (event.shouldCommit()) {
+                event.id = id;
+                event.commit();
+            }
+        }
     }
 
     // ---- private helpers ----
 
+    /**
+     * Validates records and builds the replacement map without holding the lock.
+     */
+    private static ConcurrentHashMap<String, Contact> prepare(List<Contact> loaded, BulkLoadReport report) {
+        if (loaded == null) {
+            throw new IllegalArgumentException("loaded contacts cannot be null");
+        }
+        Contact[] input = loaded.toArray(new Contact[0]);
+        BulkLoadReport.Reason[] reasons = new BulkLoadReport.Reason[input.length];
+        ConcurrentHashMap<String, Integer> firstIndex = new ConcurrentHashMap<>(input.length * 4 / 3 + 1);
+
+        // Pass 1: validate and remember the first position of every ID. Field
+        // values are not re-checked: a load accepts whatever addContact and the
+        // setters accepted, so loadAll(getAllContacts()) always succeeds.
+        IntStream.range(0, input.length).parallel().forEach(i -> {
+            Contact c = input[i];
+            if (c == null) {
+                reasons[i] = BulkLoadReport.Reason.NULL_RECORD;
+            } else {
+                firstIndex.merge(c.getContactID(), i, Math::min);
+            }
+        });
+        // Pass 2: any later occurrence is a duplicate
+        IntStream.range(0, input.length).parallel().forEach(i -> {
+            if (reasons[i] == null && firstIndex.get(input[i].getContactID()) != i) {
+                reasons[i] = BulkLoadReport.Reason.DUPLICATE_ID;
+            }
+        });
+
+        // Presized so the map never rehashes while filling
+        ConcurrentHashMap<String, Contact> map = new ConcurrentHashMap<>(firstIndex.size());
+        for (int i = 0; i < input.length; i++) {
+            if (reasons[i] == null) {
+                map.put(input[i].getContactID(), input[i]);
+            } else {
+                report.reject(i, input[i] == null ? null : input[i].getContactID(), reasons[i]);
+            }
+        }
+        return map;
+    }
+
+    private void put(Contact contact) {
+		// Throw exception if the contact info is null
+        if (contact == null) {
+            throw new IllegalArgumentException("contact cannot be null");
+        } 
+		
+		// Extract the ID from the contact object to use as a key
+		String id = contact.getContactID();
+		
+		// Throw exception if the contact ID exists in the HashMap
+		if (contacts.containsKey(id)){
+			throw new IllegalArgumentException("contact ID already exists");
+		}
+		
+		// Save the contact successfully
+        contacts.put(id, contact);
+        version++;
+        if (idFilter != null) {
+            if (idFilter.size() >= idFilter.getCapacity()) {
+                rebuildIdFilter(idFilter.getCapacity() * 2); // keep the rate as the data grows
+            } else {
+                idFilter.add(id);
+            }
+        }
+    }
+
+    private void beforeChange(String id) {
+        Contact current = contacts.get(id);
+        for (ContactSnapshot snap : openSnapshots) {
+            snap.capture(id, current);
+        }
+    }
+
+    private void rebuildIdFilter(int expected) {
+        ContactIdFilter f = new ContactIdFilter(Math.max(1024, expected * 2), idFilterRate);
+        for (String id : contacts.keySet()) {
+            f.add(id);
+        }
+        idFilter = f;
+    }
+
+    private void update(String id, ContactField field, String value) {
+        ContactEvents.Update event = new ContactEvents.Update();
+        event.begin();
+        try {
+            Contact c = find(id);
+            if (!openSnapshots.isEmpty()) {
+                beforeChange(id);
+            }
+            String old = field.get(c);
+            field.set(c, value);
+            version++;
+            for (ContactListener l : listeners) {
+                l.contactUpdated(c, field, old, value);
+            }
+        } catch (RuntimeException ex) {
+            event.fail(ex);
+            throw ex;
+        } finally {
+            if (event.shouldCommit()) {
+                event.id = id;
+                event.field = field.name();
+                event.commit();
+            }
+        }
+    }
+
+    private void delete(String id) {
+		// Definite miss: no need to look in the map
+		if (idFilter != null && id != null && !idFilter.mightContain(id)) {
+			throw new IllegalArgumentException("contact ID does not exist");
+		}
+		
+		if (id != null && !openSnapshots.isEmpty()) {
+			beforeChange(id);
+		}
+		Contact removed = id == null ? null : contacts.remove(id); // Delete the contact object
+		
+		// Throw exception if contact ID does not exist
+		if (removed == null){
+			throw new IllegalArgumentException("contact ID does not exist");
+		}
+		
+        version++;
+        if (idFilter != null) {
+            idFilter.remove(id);
+        }
+        for (ContactListener l : listeners) {
+            l.contactDeleted(removed);
+        }
+    }
+
+    private static void commit(ContactEvents.LoadAll event, List<Contact> loaded, BulkLoadReport report) {
+        if (event.shouldCommit()) {
+            event.records = loaded == null ? 0 : loaded.size();
+            event.loaded = report.getLoadedCount();
+            event.rejected = report.getRejected().size();
+            event.commit();
+        }
+    }
+
     private Contact find(String id) {
-		Contact c = contacts.get(id); // Get contact value from the HashMap
+		// Definite miss: no need to look in the map
+		if (idFilter != null && id != null && !idFilter.mightContain(id)) {
+			throw new IllegalArgumentException("Contact ID not found");
+		}
+		
+		Contact c = id == null ? null : contacts.get(id); // Get contact value from the map
 		
 		// Throw exception if contact ID does not exist
 		if (c == null) {
@@ -0,0 +1,200 @@
+package contact;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Point-in-time view of a ContactService, opened with
+ * {@link ContactService#snapshot()}.
+ *
+ * Opening is O(1). While the snapshot is open, the service saves the old
+ * values of each contact the first time it changes (copy-on-write), so the
+ * snapshot can be streamed with {@link #forEach(Consumer)} while writers
+ * keep going. The lock is taken only briefly per batch of records, never
+ * for the whole pass.
+ *
+ * Memory: besides the saved old values, the pass marks every ID it has
+ * emitted, so that a contact changed after being emitted is not emitted
+ * again. That is one map entry per contact, O(n), but no contact copies;
+ * records themselves are copied a batch at a time. Everything is released
+ * when the pass ends.
+ *
+ * A snapshot is a single-pass stream: it can be read once, then closed.
+ */
+public class ContactSnapshot implements AutoCloseable {
+
+    private static final int BATCH = 256;
+    private static final Object ABSENT = new Object();  // ID did not exist at snapshot time
+    private static final Object EMITTED = new Object(); // already handed to the consumer
+
+    private final ContactService service;
+    private final long version;
+    private final int size;
+    private ConcurrentHashMap<String, Contact> live;
+    // Guarded by the service lock: ID -> frozen old Contact, ABSENT or EMITTED
+    private final Map<String, Object> overlay = new HashMap<>();
+    private boolean sealed; // nothing more to capture: the live map was replaced or the pass ended
+    private boolean consumed;
+    private boolean closed;
+
+    ContactSnapshot(ContactService service, ConcurrentHashMap<String, Contact> live, long version, int size) {
+        this.service = service;
+        this.live = live;
+        this.version = version;
+        this.size = size;
+    }
+
+    /**
+     * @return service version (number of changes applied) when the snapshot was taken
+     */
+    public long getVersion() {return version;}
+
+    /**
+     * @return number of contacts in the snapshot
+     */
+    public int size() {return size;}
+
+    /**
+     * Streams every contact as it was when the snapshot was taken. Each
+     * contact passed to the consumer is a private copy.
+     *
+     * @param consumer receives the contacts (called without the service lock held)
+     * @throws IllegalArgumentException if consumer is null
+     * @throws IllegalStateException if the snapshot was already read or closed
+     */
+    public void forEach(Consumer<Contact> consumer) {
+        if (consumer == null) {
+            throw new IllegalArgumentException("consumer cannot be null");
+        }
+        ConcurrentHashMap<String, Contact> source;
+        synchronized (service) {
+            if (closed || consumed) {
+                throw new IllegalStateException("snapshot already read or closed");
+            }
+            consumed = true;
+            source = live;
+        }
+
+        List<Contact> out = new ArrayList<>(BATCH);
+        List<String> ids = new ArrayList<>(BATCH);
+        Iterator<String> it = source.keySet().iterator(); // weakly consistent, lock-free
+        while (it.hasNext()) {
+            ids.add(it.next());
+            if (ids.size() == BATCH || !it.hasNext()) {
+                synchronized (service) {
+                    for (String id : ids) {
+                        Contact c = resolve(id);
+                        if (c != null) {
+                            out.add(c);
+                        }
+                    }
+                }
+                ids.clear();
+                out.forEach(consumer);
+                out.clear();
+            }
+        }
+
+        // Contacts deleted (or replaced by a load) after the snapshot and not seen above
+        synchronized (service) {
+            for (Object o : overlay.values()) {
+                if (o instanceof Contact) {
+                    out.add((Contact) o);
+                }
+            }
+            // The single pass is over: drop the per-ID marks now and stop capturing
+            overlay.clear();
+            sealed = true;
+            live = null;
+        }
+        out.forEach(consumer);
+    }
+
+    /**
+     * Saves the snapshot through a ContactStorage, streaming records.
+     *
+     * @param storage destination
+     * @throws IllegalArgumentException if storage is null
+     * @throws IllegalStateException if the snapshot was already read or closed, or writing fails
+     */
+    public void writeTo(ContactStorage storage) {
+        if (storage == null) {
+            throw new IllegalArgumentException("storage cannot be null");
+        }
+        storage.save(this);
+    }
+
+    /**
+     * Releases the snapshot; writers stop saving old values for it.
+     */
+    @Override
+    public void close() {
+        synchronized (service) {
+            closed = true;
+            overlay.clear();
+            service.closeSnapshot(this);
+        }
+    }
+
+    // ---- called by ContactService under its lock ----
+
+    /**
+     * Saves the pre-change state of a contact, once per ID.
+     *
+     * @param id ID about to change
+     * @param current its current contact, or null if it does not exist yet
+     */
+    void capture(String id, Contact current) {
+        if (!sealed && !overlay.containsKey(id)) {
+            overlay.put(id, current == null ? ABSENT : freeze(current));
+        }
+    }
+
+    /**
+     * The whole map is about to be replaced: capture everything not yet
+     * captured so the snapshot no longer depends on the live map.
+     */
+    void seal(ConcurrentHashMap<String, Contact> outgoing) {
+        if (sealed) {
+            return;
+        }
+        for (Map.Entry<String, Contact> e : outgoing.entrySet()) {
+            overlay.putIfAbsent(e.getKey(), freeze(e.getValue()));
+        }
+        sealed = true;
+        live = new ConcurrentHashMap<>(); // nothing left to read from the live side
+    }
+
+    // ---- private helpers ----
+
+    /**
+     * Returns the snapshot value for an ID seen in the live map, or null if
+     * it should not be emitted. Must hold the service lock.
+     */
+    private Contact resolve(String id) {
+        Object o = overlay.get(id);
+        if (o == null) {
+            if (sealed) {
+                return null; // added after the snapshot, by a load
+            }
+            // Unchanged since the snapshot, so the live value is the snapshot value
+            Contact c = live.get(id); // same map as the iterator until sealed
+            overlay.put(id, EMITTED);
+            return c == null ? null : freeze(c);
+        }
+        if (o instanceof Contact) {
+            overlay.put(id, EMITTED);
+            return (Contact) o;
+        }
+        return null; // ABSENT or EMITTED
+    }
+
+    private static Contact freeze(Contact c) {
+        return Contact.restore(c.getContactID(), c.getFirstName(), c.getLastName(), c.getPhone(), c.getAddress());
+    }
+}
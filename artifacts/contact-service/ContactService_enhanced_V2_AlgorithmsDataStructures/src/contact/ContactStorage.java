@@ -1,21 +1,41 @@
 package contact;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.CRC32C;
 
 /**
  * Handles persistence of contacts to and from a text file.
  *
  * Contacts are stored using a simple delimiter-based format
  * with one contact per line.
+ *
+ * In checksummed mode the file starts with a header line and every
+ * record carries a sequence number and a CRC32C of its bytes:
+ * {@code seq|id|first|last|phone|address|crc}. This lets {@link #recover()}
+ * tell a torn write at the end of the file apart from bad input.
  */
 public class ContactStorage {
 
+    static final String CHECKSUM_HEADER = "#contacts-crc32c v1";
+
     private final Path filePath;
+    private final boolean checksummed;
+    // Stamp of the contents this handler last saved or loaded, or null before either
+    private volatile Long lastStamp;
 
     /**
      * Create a storage handler pointing to a specific file path.
@@ -24,12 +44,37 @@ public class ContactStorage {
 	 * @throws IllegalArgumentException if filePath is null
      */
     public ContactStorage(Path filePath) {
+        this(filePath, false);
+    }
+
+    /**
+     * Create a storage handler that optionally writes checksummed records.
+     *
+     * Loading always detects the format from the file header, so a
+     * checksummed handler can still read plain files and vice versa.
+     *
+     * @param filePath Path to the storage file
+     * @param checksummed true to write a sequence number and CRC32C per record
+     * @throws IllegalArgumentException if filePath is null
+     */
+    public ContactStorage(Path filePath, boolean checksummed) {
         if (filePath == null) {
             throw new IllegalArgumentException("filePath cannot be null");
         }
         this.filePath = filePath;
+        this.checksummed = checksummed;
     }
 
+    /**
+     * @return the storage file path
+     */
+    public Path getFilePath() {return filePath;}
+
+    /**
+     * @return true if this handler writes checksummed records
+     */
+    public boolean isChecksummed() {return checksummed;}
+
     /**
      * Load contacts from disk. If the file does not exist, returns an empty list.
 	 *
@@ -37,58 +82,635 @@ public class ContactStorage {
 	 * @throws IllegalStateException if an I/O error occurs while reading the file
      */
     public List<Contact> load() {
+        return loadWithReport().getContacts();
+    }
+
+    /**
+     * Load contacts from disk and report every line that was skipped.
+     * The file is never modified.
+     *
+     * @return load report with contacts and dropped lines
+     * @throws IllegalStateException if an I/O error occurs while reading the file
+     */
+    public StorageLoadReport loadWithReport() {
+        return read(false);
+    }
+
+    /**
+     * Load contacts and repair the file: a torn record at the end of a
+     * checksummed file is cut off so that later appends start on a clean
+     * record boundary. Plain files are loaded as with {@link #loadWithReport()}.
+     *
+     * @return load report, including the number of truncated bytes
+     * @throws IllegalStateException if an I/O error occurs while reading or truncating the file
+     */
+    public StorageLoadReport recover() {
+        return read(true);
+    }
+
+    /**
+     * Save contacts to disk (overwrites file).
+     *
+     * Each contact's encoded line is cached on the contact until it
+     * changes, so a save of mostly unchanged contacts is little more than
+     * copying cached bytes to the file.
+	 *
+     * @param contacts list of contacts to save
+	 * @throws IllegalStateException if an I/O error occurs while writing the file
+     */
+    public void save(List<Contact> contacts) {
+        ContactEvents.StorageSave event = new ContactEvents.StorageSave();
+        event.begin();
+        try {
+            if (contacts == null) {
+                throw new IllegalArgumentException("contacts cannot be null");
+            }
+            long seq = 0;
+            lastStamp = null; // the file is about to change
+            try (LineWriter out = new LineWriter(filePath, checksummed)) {
+                for (Contact c : contacts) {
+                    out.addRecord(++seq, c);
+                }
+                out.flush();
+                event.bytes = out.bytes;
+                lastStamp = out.stamp();
+            } catch (IOException ex) {
+                throw new IllegalStateException("Failed to save contacts to file: " + filePath, ex);
+            }
+            event.records = seq;
+        } catch (RuntimeException ex) {
+            event.fail(ex);
+            throw ex;
+        } finally {
+            commit(event);
+        }
+    }
+
+    /**
+     * Save a point-in-time snapshot to disk (overwrites file), streaming one
+     * batch of records at a time, so no copy of the whole data set is built.
+     * The snapshot still keeps one small entry per emitted ID until the
+     * pass ends (see {@link ContactSnapshot}).
+     *
+     * @param snapshot snapshot to save; it is consumed
+     * @throws IllegalArgumentException if snapshot is null
+     * @throws IllegalStateException if the snapshot was already read or an I/O error occurs
+     */
+    public void save(ContactSnapshot snapshot) {
+        ContactEvents.StorageSave event = new ContactEvents.StorageSave();
+        event.begin();
+        try {
+            if (snapshot == null) {
+                throw new IllegalArgumentException("snapshot cannot be null");
+            }
+            long[] seq = {0};
+            lastStamp = null; // the file is about to change
+            try (LineWriter out = new LineWriter(filePath, checksummed)) {
+                snapshot.forEach(c -> {
+                    try {
+                        out.addRecord(++seq[0], c);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+                out.flush();
+                event.bytes = out.bytes;
+                lastStamp = out.stamp();
+            } catch (IOException | UncheckedIOException ex) {
+                throw new IllegalStateException("Failed to save contacts to file: " + filePath, ex);
+            }
+            event.records = seq[0];
+        } catch (RuntimeException ex) {
+            event.fail(ex);
+            throw ex;
+        } finally {
+            commit(event);
+        }
+    }
+
+    /**
+     * Saves an ID filter next to the contacts file ({@code <file>.idf}),
+     * stamped with the length and CRC32C of the contacts this handler last
+     * saved or loaded, so a later load can tell whether it still matches.
+     * Call it right after such a save or load. The sidecar ends with a
+     * CRC32C of its own bytes.
+     *
+     * @param filter filter to save
+     * @throws IllegalArgumentException if filter is null
+     * @throws IllegalStateException if an I/O error occurs while writing the file
+     */
+    public void saveIdFilter(ContactIdFilter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("filter cannot be null");
+        }
+        Path target = sidecar(".idf");
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(bytes);
+            data.writeLong(dataFileStamp());
+            filter.writeTo(data);
+            CRC32C crc = new CRC32C();
+            crc.update(bytes.toByteArray());
+            data.writeInt((int) crc.getValue());
+            data.flush();
+            Files.write(target, bytes.toByteArray());
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to save ID filter to file: " + target, ex);
+        }
+    }
+
+    /**
+     * Loads the ID filter saved by {@link #saveIdFilter(ContactIdFilter)}.
+     * The filter is only a cache, so a sidecar that is damaged in any way
+     * counts as missing.
+     *
+     * @return the filter, or null if there is none, it is damaged or the
+     *         contacts file changed since it was saved
+     */
+    public ContactIdFilter loadIdFilter() {
+        Path source = sidecar(".idf");
+        if (!Files.exists(source) || !Files.exists(filePath)) {
+            return null;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(source);
+            if (bytes.length < 8 + 4) {
+                return null;
+            }
+            ByteBuffer buf = ByteBuffer.wrap(bytes);
+            CRC32C crc = new CRC32C();
+            crc.update(bytes, 0, bytes.length - 4);
+            if (buf.getInt(bytes.length - 4) != (int) crc.getValue() || buf.getLong(0) != dataFileStamp()) {
+                return null; // damaged or stale
+            }
+            return ContactIdFilter.readFrom(new ByteArrayInputStream(bytes, 8, bytes.length - 8 - 4));
+        } catch (IOException | RuntimeException ex) {
+            return null; // unreadable filter is just rebuilt
+        }
+    }
+
+    /**
+     * Saves every index of a service next to the contacts file
+     * ({@code <file>.<field>.idx}), stamped like the ID filter with the
+     * contents this handler last saved or loaded. Call it right after
+     * saving the same contacts, e.g. on shutdown, so that
+     * {@link #restoreIndexes} can reuse the files on the next start.
+     *
+     * @param service service whose contacts and indexed fields are saved
+     * @throws IllegalArgumentException if service is null
+     * @throws IllegalStateException if an I/O error occurs while writing a file
+     */
+    public void saveIndexes(ContactService service) {
+        if (service == null) {
+            throw new IllegalArgumentException("service cannot be null");
+        }
+        synchronized (service) {
+            List<Contact> contacts = service.getAllContacts();
+            long stamp;
+            try {
+                stamp = dataFileStamp();
+            } catch (IOException ex) {
+                throw new IllegalStateException("Failed to read contacts file: " + filePath, ex);
+            }
+            for (ContactQuery.Field field : service.getIndexedFields()) {
+                Path target = indexFile(field);
+                try {
+                    IndexFile.write(target, field, stamp, contacts);
+                } catch (IOException ex) {
+                    throw new IllegalStateException("Failed to save index to file: " + target, ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gives a service indexes on the given fields, reusing the files saved
+     * by {@link #saveIndexes} where they match the current contacts file.
+     * A reused index is memory-mapped and answers queries from the file
+     * without being rebuilt; its blocks are checksummed as they are first
+     * read. Missing, stale or unreadable indexes are rebuilt in parallel.
+     * Call it right after loading the service from this storage.
+     *
+     * @param service service loaded from this storage
+     * @param fields fields to index
+     * @return number of indexes reused from disk
+     * @throws IllegalArgumentException if service, fields or a field is null
+     */
+    public int restoreIndexes(ContactService service, ContactQuery.Field... fields) {
+        if (service == null || fields == null) {
+            throw new IllegalArgumentException("service and fields cannot be null");
+        }
+        List<ContactQuery.Field> stale = new ArrayList<>();
+        int reused = 0;
+        synchronized (service) {
+            Map<String, Contact> contacts = service.contactMap();
+            Long stamp = null; // read on first use: no index file, no stamp needed
+            for (ContactQuery.Field field : fields) {
+                if (field == null) {
+                    throw new IllegalArgumentException("field cannot be null");
+                }
+                IndexFile saved = null;
+                Path source = indexFile(field);
+                try {
+                    if (Files.exists(source) && Files.exists(filePath)) {
+                        if (stamp == null) {
+                            stamp = dataFileStamp();
+                        }
+                        saved = IndexFile.open(source, field, stamp, contacts.size());
+                    }
+                } catch (IOException ex) {
+                    saved = null; // unreadable index is just rebuilt
+                }
+                if (saved != null) {
+                    service.installIndex(new MappedFieldIndex(saved, contacts));
+                    reused++;
+                } else {
+                    stale.add(field);
+                }
+            }
+            service.createIndexes(stale.toArray(new ContactQuery.Field[0]));
+        }
+        return reused;
+    }
+
+    // ---- private helpers ----
+
+    private void commit(ContactEvents.StorageSave event) {
+        if (event.shouldCommit()) {
+            event.path = filePath.toString();
+            event.checksummed = checksummed;
+            event.commit();
+        }
+    }
+
+    private Path sidecar(String suffix) {
+        return filePath.resolveSibling(filePath.getFileName() + suffix);
+    }
+
+    private Path indexFile(ContactQuery.Field field) {
+        return sidecar("." + field.name().toLowerCase(Locale.ROOT) + ".idx");
+    }
+
+    /**
+     * Identifies the contents of the contacts file by length and CRC32C.
+     * Unlike the size and modification time, it changes whenever a record
+     * changes. Saves and loads compute it from the bytes they already
+     * handle, so this reads the file only if neither has run yet.
+     */
+    private long dataFileStamp() throws IOException {
+        Long known = lastStamp;
+        if (known != null) {
+            return known;
+        }
         if (!Files.exists(filePath)) {
-            return new ArrayList<>();
+            return stamp(0, 0);
         }
+        CRC32C crc = new CRC32C();
+        long size = 0;
+        ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20);
+        try (FileChannel ch = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            while (ch.read(buf) >= 0) {
+                buf.flip();
+                size += buf.remaining();
+                crc.update(buf);
+                buf.clear();
+            }
+        }
+        return stamp(size, crc.getValue());
+    }
 
+    private static long stamp(long size, long crc) {
+        // Multiplying by an odd constant is a bijection, so no size bits are lost
+        return size * 0x9E3779B97F4A7C15L ^ crc;
+    }
+
+    private StorageLoadReport read(boolean truncateTornTail) {
+        ContactEvents.StorageLoad event = new ContactEvents.StorageLoad();
+        event.begin();
+        StorageLoadReport report = new StorageLoadReport();
         try {
-            List<String> lines = Files.readAllLines(filePath, StandardCharsets.UTF_8);
-            List<Contact> contacts = new ArrayList<>();
+            readInto(report, truncateTornTail, event);
+            return report;
+        } catch (RuntimeException ex) {
+            event.fail(ex);
+            throw ex;
+        } finally {
+            if (event.shouldCommit()) {
+                event.path = filePath.toString();
+                event.records = report.getContacts().size();
+                event.skipped = report.getDropped().size();
+                event.truncatedBytes = report.getTruncatedBytes();
+                event.commit();
+            }
+        }
+    }
 
-            for (String line : lines) {
-                if (line == null || line.isBlank()) {
-                    continue;
+    private void readInto(StorageLoadReport report, boolean truncateTornTail, ContactEvents.StorageLoad event) {
+        if (!Files.exists(filePath)) {
+            lastStamp = stamp(0, 0);
+            return;
+        }
+
+        try {
+            byte[] data = Files.readAllBytes(filePath);
+            byte[] header = CHECKSUM_HEADER.getBytes(StandardCharsets.UTF_8);
+            event.bytes = data.length;
+            event.checksummed = startsWithLine(data, header);
+            int length = data.length;
+            if (event.checksummed) {
+                long goodEnd = readChecksummed(data, header.length + 1, report);
+                if (goodEnd < data.length && truncateTornTail) {
+                    try (FileChannel ch = FileChannel.open(filePath, StandardOpenOption.WRITE)) {
+                        ch.truncate(goodEnd);
+                        ch.force(true);
+                    }
+                    report.setTruncatedBytes(data.length - goodEnd);
+                    length = (int) goodEnd;
                 }
+            } else {
+                readPlain(data, report);
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(data, 0, length);
+            lastStamp = stamp(length, crc.getValue());
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to load contacts from file: " + filePath, ex);
+        }
+    }
+
+    private void readPlain(byte[] data, StorageLoadReport report) {
+        int lineNumber = 0;
+        int start = 0;
+        while (start < data.length) {
+            int end = indexOf(data, (byte) '\n', start);
+            int next = end < 0 ? data.length : end + 1;
+            if (end < 0) {
+                end = data.length;
+            }
+            lineNumber++;
+            int lineEnd = (end > start && data[end - 1] == '\r') ? end - 1 : end;
+            String line = new String(data, start, lineEnd - start, StandardCharsets.UTF_8);
+
+            if (!line.isBlank()) {
                 // Expected: id|first|last|phone|address
                 String[] parts = line.split("\\|", -1);
                 if (parts.length != 5) {
-                    continue; // skip malformed lines
+                    report.drop(lineNumber, start, StorageLoadReport.Reason.MALFORMED, line);
+                } else {
+                    try {
+                        report.addContact(Contact.restore(parts[0], parts[1], parts[2], parts[3], parts[4]));
+                    } catch (IllegalArgumentException ex) {
+                        report.drop(lineNumber, start, StorageLoadReport.Reason.INVALID, line);
+                    }
                 }
+            }
+            start = next;
+        }
+    }
+
+    /**
+     * Scans checksummed records starting at {@code pos}.
+     *
+     * @return byte offset just past the last record that is followed only by
+     *         intact records, i.e. the length the file should be cut to
+     */
+    private long readChecksummed(byte[] data, int pos, StorageLoadReport report) {
+        CRC32C crc = new CRC32C();
+        int lineNumber = 1; // header
+        long lastSeq = 0;
+        long goodEnd = pos;
+        int firstTornLine = -1;
+        List<StorageLoadReport.DroppedRecord> pendingTail = new ArrayList<>();
+
+        while (pos < data.length) {
+            int end = indexOf(data, (byte) '\n', pos);
+            boolean terminated = end >= 0;
+            if (!terminated) {
+                end = data.length;
+            }
+            lineNumber++;
+            int sep = lastIndexOf(data, (byte) '|', pos, end);
+
+            boolean intact = false;
+            if (terminated && sep > pos && end - sep - 1 == 8) {
+                crc.reset();
+                crc.update(data, pos, sep - pos);
+                intact = parseHex(data, sep + 1, end) == crc.getValue();
+            }
+
+            if (!intact) {
+                // Might be the start of a torn tail; decide once we know what follows
+                if (firstTornLine < 0) {
+                    firstTornLine = lineNumber;
+                }
+                pendingTail.add(new StorageLoadReport.DroppedRecord(lineNumber, pos,
+                        StorageLoadReport.Reason.TORN_TAIL, new String(data, pos, end - pos, StandardCharsets.UTF_8)));
+                pos = terminated ? end + 1 : end;
+                continue;
+            }
+
+            // An intact record after corrupt ones means those were not a tail
+            for (StorageLoadReport.DroppedRecord d : pendingTail) {
+                report.drop(d.getLineNumber(), d.getOffset(), StorageLoadReport.Reason.CHECKSUM_MISMATCH, d.getText());
+            }
+            pendingTail.clear();
+            firstTornLine = -1;
 
+            String body = new String(data, pos, sep - pos, StandardCharsets.UTF_8);
+            // Expected: seq|id|first|last|phone|address
+            String[] parts = body.split("\\|", -1);
+            long seq = parts.length == 6 ? parseSeq(parts[0]) : -1;
+            if (parts.length != 6 || seq < 0) {
+                report.drop(lineNumber, pos, StorageLoadReport.Reason.MALFORMED, body);
+            } else if (seq <= lastSeq) {
+                report.drop(lineNumber, pos, StorageLoadReport.Reason.OUT_OF_SEQUENCE, body);
+            } else {
+                lastSeq = seq;
                 try {
-                    contacts.add(new Contact(parts[0], parts[1], parts[2], parts[3], parts[4]));
+                    report.addContact(Contact.restore(parts[1], parts[2], parts[3], parts[4], parts[5]));
                 } catch (IllegalArgumentException ex) {
-                    // Skip invalid records rather than crashing load
+                    report.drop(lineNumber, pos, StorageLoadReport.Reason.INVALID, body);
                 }
             }
+            pos = end + 1;
+            goodEnd = pos;
+        }
 
-            return contacts;
-        } catch (IOException ex) {
-            throw new IllegalStateException("Failed to load contacts from file: " + filePath, ex);
+        for (StorageLoadReport.DroppedRecord d : pendingTail) {
+            report.drop(d.getLineNumber(), d.getOffset(), d.getReason(), d.getText());
         }
+        report.setLastSequence(lastSeq);
+        return goodEnd;
     }
 
     /**
-     * Save contacts to disk (overwrites file).
-	 *
-     * @param contacts list of contacts to save
-	 * @throws IllegalStateException if an I/O error occurs while writing the file
+     * Forgets the stamp of the last save or load; for code that rewrites
+     * the file without going through this handler.
      */
-    public void save(List<Contact> contacts) {
-        if (contacts == null) {
-            throw new IllegalArgumentException("contacts cannot be null");
+    void fileReplaced() {lastStamp = null;}
+
+    void appendRecord(StringBuilder sb, long seq, Contact c) {
+        // Use '|' delimiter. (Assumes address/names don't include '|'. Good enough for milestone.)
+        if (checksummed) {
+            appendChecksummed(sb, seq, c);
+        } else {
+            sb.append(c.getContactID()).append('|').append(c.getFirstName()).append('|')
+              .append(c.getLastName()).append('|').append(c.getPhone()).append('|')
+              .append(c.getAddress()).append('\n');
+        }
+    }
+
+    private static void appendChecksummed(StringBuilder sb, long seq, Contact c) {
+        int start = sb.length();
+        sb.append(seq).append('|').append(c.getContactID()).append('|').append(c.getFirstName()).append('|')
+          .append(c.getLastName()).append('|').append(c.getPhone()).append('|').append(c.getAddress());
+        byte[] body = sb.substring(start).getBytes(StandardCharsets.UTF_8);
+        CRC32C crc = new CRC32C();
+        crc.update(body, 0, body.length);
+        String hex = Long.toHexString(crc.getValue());
+        sb.append('|');
+        for (int i = hex.length(); i < 8; i++) {
+            sb.append('0');
         }
+        sb.append(hex).append('\n');
+    }
 
-        List<String> lines = new ArrayList<>();
-        for (Contact c : contacts) {
-            // Use '|' delimiter. (Assumes address/names don't include '|'. Good enough for milestone.)
-            lines.add(c.getContactID() + "|" + c.getFirstName() + "|" + c.getLastName() + "|" + c.getPhone() + "|" + c.getAddress());
+    private static boolean startsWithLine(byte[] data, byte[] header) {
+        if (data.length <= header.length || data[header.length] != '\n') {
+            return false;
         }
+        for (int i = 0; i < header.length; i++) {
+            if (data[i] != header[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
 
+    private static int indexOf(byte[] data, byte b, int from) {
+        for (int i = from; i < data.length; i++) {
+            if (data[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(byte[] data, byte b, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (data[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long parseHex(byte[] data, int from, int to) {
+        long v = 0;
+        for (int i = from; i < to; i++) {
+            int d = Character.digit(data[i], 16);
+            if (d < 0) {
+                return -1;
+            }
+            v = (v << 4) | d;
+        }
+        return v;
+    }
+
+    private static long parseSeq(String s) {
         try {
-            Files.write(filePath, lines, StandardCharsets.UTF_8);
-        } catch (IOException ex) {
-            throw new IllegalStateException("Failed to save contacts to file: " + filePath, ex);
+            return Long.parseLong(s);
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Writes a contacts file from the contacts' cached lines. The lines are
+     * copied into one reused direct buffer that goes to the channel
+     * whenever it fills, so the file is written in large blocks with no
+     * per-record allocation. Checksummed records add a per-save sequence
+     * number and CRC around the cached line.
+     */
+    private static final class LineWriter implements AutoCloseable {
+        private static final int BUFFER_BYTES = 1 << 18;
+
+        private final FileChannel channel;
+        private final boolean checksummed;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        private final byte[] prefix = new byte[21]; // up to 19 digits and '|'
+        private final CRC32C crc = new CRC32C();
+        private final CRC32C contents = new CRC32C(); // of every byte written, for the stamp
+        private long bytes;
+
+        LineWriter(Path path, boolean checksummed) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.checksummed = checksummed;
+            if (checksummed) {
+                byte[] header = (CHECKSUM_HEADER + '\n').getBytes(StandardCharsets.UTF_8);
+                put(header, 0, header.length);
+            }
+        }
+
+        void addRecord(long seq, Contact c) throws IOException {
+            byte[] line = c.encodedLine();
+            if (!checksummed) {
+                put(line, 0, line.length);
+                return;
+            }
+            // seq|line|crc, where the CRC covers everything before its separator
+            int start = prefix.length;
+            prefix[--start] = '|';
+            long n = seq;
+            do {
+                prefix[--start] = (byte) ('0' + n % 10);
+                n /= 10;
+            } while (n > 0);
+            crc.reset();
+            crc.update(prefix, start, prefix.length - start);
+            crc.update(line, 0, line.length - 1);
+            put(prefix, start, prefix.length - start);
+            put(line, 0, line.length - 1);
+            if (buffer.remaining() < 10) {
+                flush();
+            }
+            buffer.put((byte) '|');
+            long value = crc.getValue();
+            for (int shift = 28; shift >= 0; shift -= 4) {
+                buffer.put((byte) Character.forDigit((int) (value >>> shift) & 0xF, 16));
+            }
+            buffer.put((byte) '\n');
+            bytes += 10;
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            contents.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * @return stamp of the file as written so far; call after {@link #flush()}
+         */
+        long stamp() {
+            return ContactStorage.stamp(bytes, contents.getValue());
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private void put(byte[] b, int off, int len) throws IOException {
+            if (buffer.remaining() < len) {
+                flush();
+            }
+            buffer.put(b, off, len);
+            bytes += len;
         }
     }
 }
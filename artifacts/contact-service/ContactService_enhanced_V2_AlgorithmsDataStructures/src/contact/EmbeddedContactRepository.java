@@ -0,0 +1,324 @@
+package contact;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Embedded on-disk store: contacts live in a file of fixed-size slots and
+ * only an ID-to-slot index is kept in memory.
+ *
+ * Contact fields have fixed maximum lengths, so every record fits in one
+ * {@value #SLOT_BYTES}-byte slot: a live flag, then each field as a length
+ * byte and UTF-16 chars padded to the field's maximum, then a CRC32C of
+ * the flag and fields. Reads and updates touch exactly one slot with
+ * positional I/O, deletes clear the flag and recycle the slot, and a scan
+ * reads the file sequentially. Opening scans the slots once to rebuild the
+ * index; a live slot whose CRC does not match, e.g. after a write torn by
+ * a crash, is skipped, counted and recycled instead of failing the open.
+ */
+public class EmbeddedContactRepository implements ContactRepository {
+
+    private static final int MAGIC = 0x43534C54; // "CSLT"
+    private static final int HEADER_BYTES = 8;   // magic, slot size
+    private static final int[] WIDTHS = {10, 10, 10, 10, 30}; // id, first, last, phone, address
+    static final int SLOT_BYTES = 1 + 5 + 2 * (10 + 10 + 10 + 10 + 30) + 4;
+    private static final int CRC_AT = SLOT_BYTES - 4;
+    private static final int SCAN_SLOTS = 512;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final Map<String, Integer> index = new HashMap<>();
+    private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+    private final ByteBuffer slot = ByteBuffer.allocate(SLOT_BYTES);
+    private final CRC32C crc = new CRC32C();
+    private int slotCount;
+    private int damagedSlots;
+
+    /**
+     * Opens a store, creating the file if it is missing.
+     *
+     * @param file store file
+     * @throws IllegalArgumentException if file is null
+     * @throws IllegalStateException if the file cannot be read or is not a contact store
+     */
+    public EmbeddedContactRepository(Path file) {
+        if (file == null) {
+            throw new IllegalArgumentException("file cannot be null");
+        }
+        this.file = file;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to open contact store: " + file, ex);
+        }
+        try {
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(SLOT_BYTES);
+                header.flip();
+                channel.write(header, 0);
+            } else {
+                rebuildIndex();
+            }
+        } catch (IOException | RuntimeException ex) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // already failing
+            }
+            if (ex instanceof RuntimeException) {
+                throw (RuntimeException) ex;
+            }
+            throw new IllegalStateException("Failed to open contact store: " + file, ex);
+        }
+    }
+
+    public Path getFile() {return file;}
+
+    /**
+     * @return live slots skipped when the store was opened because their CRC did not match
+     */
+    public synchronized int getDamagedSlots() {return damagedSlots;}
+
+    @Override
+    public synchronized void add(Contact contact) {
+        if (contact == null) {
+            throw new IllegalArgumentException("contact cannot be null");
+        }
+        if (index.containsKey(contact.getContactID())) {
+            throw new IllegalArgumentException("contact ID already exists");
+        }
+        insert(contact);
+    }
+
+    @Override
+    public synchronized void addAll(List<Contact> contacts) {
+        if (contacts == null) {
+            throw new IllegalArgumentException("contacts cannot be null");
+        }
+        Set<String> seen = new HashSet<>(contacts.size() * 4 / 3 + 1);
+        for (Contact c : contacts) {
+            if (c == null) {
+                throw new IllegalArgumentException("contact cannot be null");
+            }
+            if (!seen.add(c.getContactID()) || index.containsKey(c.getContactID())) {
+                throw new IllegalArgumentException("contact ID already exists");
+            }
+        }
+        for (Contact c : contacts) {
+            insert(c);
+        }
+    }
+
+    @Override
+    public synchronized Contact get(String id) {
+        return read(slotOf(id, "Contact ID not found"));
+    }
+
+    @Override
+    public synchronized void update(String id, ContactField field, String value) {
+        if (field == null) {
+            throw new IllegalArgumentException("field cannot be null");
+        }
+        int s = slotOf(id, "Contact ID not found");
+        Contact c = read(s);
+        field.set(c, value); // validates
+        write(s, c);
+    }
+
+    @Override
+    public synchronized void delete(String id) {
+        int s = slotOf(id, "contact ID does not exist");
+        slot.clear().put((byte) 0).flip();
+        try {
+            channel.write(slot, offset(s));
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to write contact store: " + file, ex);
+        }
+        index.remove(id);
+        freeSlots.push(s);
+    }
+
+    @Override
+    public synchronized int size() {
+        return index.size();
+    }
+
+    @Override
+    public synchronized void forEach(Consumer<? super Contact> action) {
+        scan((s, c) -> action.accept(c));
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            channel.force(true);
+            channel.close();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to close contact store: " + file, ex);
+        }
+    }
+
+    // ---- private helpers ----
+
+    private interface SlotVisitor {
+        void visit(int slot, Contact contact);
+    }
+
+    private int slotOf(String id, String missingMessage) {
+        Integer s = id == null ? null : index.get(id);
+        if (s == null) {
+            throw new IllegalArgumentException(missingMessage);
+        }
+        return s;
+    }
+
+    private void insert(Contact c) {
+        Integer free = freeSlots.poll();
+        int s = free != null ? free : slotCount++;
+        write(s, c);
+        index.put(c.getContactID(), s);
+    }
+
+    private static long offset(int s) {
+        return HEADER_BYTES + (long) s * SLOT_BYTES;
+    }
+
+    private void write(int s, Contact c) {
+        slot.clear();
+        slot.put((byte) 1);
+        putField(slot, c.getContactID(), WIDTHS[0]);
+        putField(slot, c.getFirstName(), WIDTHS[1]);
+        putField(slot, c.getLastName(), WIDTHS[2]);
+        putField(slot, c.getPhone(), WIDTHS[3]);
+        putField(slot, c.getAddress(), WIDTHS[4]);
+        slot.putInt(CRC_AT, checksum(slot, 0));
+        slot.position(SLOT_BYTES).flip();
+        try {
+            channel.write(slot, offset(s));
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to write contact store: " + file, ex);
+        }
+    }
+
+    private Contact read(int s) {
+        slot.clear();
+        try {
+            while (slot.hasRemaining() && channel.read(slot, offset(s) + slot.position()) >= 0) {
+                // keep reading until the slot is full
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to read contact store: " + file, ex);
+        }
+        slot.flip();
+        if (slot.getInt(CRC_AT) != checksum(slot, 0)) {
+            throw new IllegalStateException("Damaged contact record in store: " + file);
+        }
+        slot.get(); // live flag
+        return decode(slot);
+    }
+
+    /**
+     * Visits every intact live slot in file order.
+     *
+     * @return live slots skipped because their CRC did not match
+     */
+    private int scan(SlotVisitor visitor) {
+        ByteBuffer page = ByteBuffer.allocate(SCAN_SLOTS * SLOT_BYTES);
+        int damaged = 0;
+        try {
+            for (int first = 0; first < slotCount; first += SCAN_SLOTS) {
+                int n = Math.min(SCAN_SLOTS, slotCount - first);
+                page.clear().limit(n * SLOT_BYTES);
+                long base = offset(first);
+                while (page.hasRemaining() && channel.read(page, base + page.position()) >= 0) {
+                    // keep reading until the page is full
+                }
+                for (int i = 0; i < n; i++) {
+                    int at = i * SLOT_BYTES;
+                    page.position(at);
+                    if (page.get() != 1) {
+                        continue;
+                    }
+                    if (page.getInt(at + CRC_AT) != checksum(page, at)) {
+                        damaged++;
+                        continue;
+                    }
+                    Contact c;
+                    try {
+                        c = decode(page);
+                    } catch (RuntimeException ex) {
+                        damaged++; // intact bytes, but not a valid contact
+                        continue;
+                    }
+                    visitor.visit(first + i, c);
+                }
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to read contact store: " + file, ex);
+        }
+        return damaged;
+    }
+
+    private void rebuildIndex() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        channel.read(header, 0);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != SLOT_BYTES) {
+            throw new IllegalStateException("Not a contact store: " + file);
+        }
+        long slots = (channel.size() - HEADER_BYTES) / SLOT_BYTES;
+        channel.truncate(offset((int) slots)); // drop a torn final slot
+        slotCount = (int) slots;
+        boolean[] live = new boolean[slotCount];
+        damagedSlots = scan((s, c) -> {
+            index.put(c.getContactID(), s);
+            live[s] = true;
+        });
+        for (int s = slotCount - 1; s >= 0; s--) {
+            if (!live[s]) {
+                freeSlots.push(s);
+            }
+        }
+    }
+
+    private int checksum(ByteBuffer buf, int at) {
+        crc.reset();
+        crc.update(buf.array(), at, CRC_AT);
+        return (int) crc.getValue();
+    }
+
+    private static void putField(ByteBuffer buf, String value, int width) {
+        buf.put((byte) value.length());
+        for (int i = 0; i < width; i++) {
+            buf.putChar(i < value.length() ? value.charAt(i) : 0);
+        }
+    }
+
+    private static String getField(ByteBuffer buf, int width) {
+        int length = buf.get();
+        char[] chars = new char[length];
+        for (int i = 0; i < width; i++) {
+            char ch = buf.getChar();
+            if (i < length) {
+                chars[i] = ch;
+            }
+        }
+        return new String(chars);
+    }
+
+    private static Contact decode(ByteBuffer buf) {
+        String id = getField(buf, WIDTHS[0]);
+        return Contact.restore(id, getField(buf, WIDTHS[1]), getField(buf, WIDTHS[2]),
+                getField(buf, WIDTHS[3]), getField(buf, WIDTHS[4]));
+    }
+}
@@ -0,0 +1,158 @@
+package contact;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Ordered secondary index on one contact field: value to the set of
+ * contacts with that value. Supports equals, prefix and range lookups.
+ *
+ * The index registers itself as a ContactListener, so it is updated under
+ * the service lock as part of every change.
+ */
+class FieldIndex implements ContactListener {
+
+    private final ContactQuery.Field field;
+    private final TreeMap<String, Set<Contact>> entries = new TreeMap<>();
+
+    FieldIndex(ContactQuery.Field field, Collection<Contact> contacts) {
+        this.field = field;
+        contactsLoaded(new ArrayList<>(contacts));
+    }
+
+    /**
+     * Creates an empty index, for subclasses that fill it themselves.
+     */
+    FieldIndex(ContactQuery.Field field) {
+        this.field = field;
+    }
+
+    ContactQuery.Field getField() {return field;}
+
+    /**
+     * @return true if this index can answer the leaf predicate
+     */
+    boolean supports(ContactPredicate.Leaf leaf) {
+        return leaf.field == field && leaf.op != ContactPredicate.Op.CONTAINS;
+    }
+
+    /**
+     * Counts matching contacts, stopping once the count exceeds {@code cap}.
+     */
+    long estimate(ContactPredicate.Leaf leaf, long cap) {
+        long n = 0;
+        for (Set<Contact> s : slice(leaf).values()) {
+            n += s.size();
+            if (n > cap) {
+                break;
+            }
+        }
+        return n;
+    }
+
+    List<Contact> lookup(ContactPredicate.Leaf leaf) {
+        List<Contact> out = new ArrayList<>();
+        for (Set<Contact> s : slice(leaf).values()) {
+            out.addAll(s);
+        }
+        return out;
+    }
+
+    private NavigableMap<String, Set<Contact>> slice(ContactPredicate.Leaf leaf) {
+        String from = lowerBound(leaf);
+        String to = upperBound(leaf);
+        boolean toInclusive = leaf.op == ContactPredicate.Op.EQUALS;
+        if (from != null && to != null && (toInclusive ? from.compareTo(to) > 0 : from.compareTo(to) >= 0)) {
+            return Collections.emptyNavigableMap();
+        }
+        NavigableMap<String, Set<Contact>> m = entries;
+        if (from != null) {
+            m = m.tailMap(from, true);
+        }
+        if (to != null) {
+            m = m.headMap(to, toInclusive);
+        }
+        return m;
+    }
+
+    /**
+     * @return smallest key a supported leaf selects (inclusive), or null if unbounded
+     */
+    static String lowerBound(ContactPredicate.Leaf leaf) {
+        return leaf.op == ContactPredicate.Op.PREFIX && leaf.value.isEmpty() ? null : leaf.value;
+    }
+
+    /**
+     * @return key above those a supported leaf selects, or null if unbounded;
+     *         inclusive for EQUALS, exclusive otherwise
+     */
+    static String upperBound(ContactPredicate.Leaf leaf) {
+        switch (leaf.op) {
+            case EQUALS:
+                return leaf.value;
+            case PREFIX:
+                if (leaf.value.isEmpty()) {
+                    return null;
+                }
+                // Smallest string greater than every string with this prefix
+                return leaf.value.substring(0, leaf.value.length() - 1)
+                        + (char) (leaf.value.charAt(leaf.value.length() - 1) + 1);
+            default:
+                return leaf.to;
+        }
+    }
+
+    // ---- ContactListener ----
+
+    @Override
+    public void contactAdded(Contact contact) {
+        entries.computeIfAbsent(field.get(contact), k -> Collections.newSetFromMap(new IdentityHashMap<>()))
+               .add(contact);
+    }
+
+    @Override
+    public void contactDeleted(Contact contact) {
+        remove(field.get(contact), contact);
+    }
+
+    @Override
+    public void contactUpdated(Contact contact, ContactField changed, String oldValue, String newValue) {
+        if (ContactQuery.Field.of(changed) == field) {
+            remove(oldValue, contact);
+            contactAdded(contact);
+        }
+    }
+
+    @Override
+    public void contactsLoaded(List<Contact> contacts) {
+        entries.clear();
+        for (Contact c : contacts) {
+            contactAdded(c);
+        }
+    }
+
+    private void remove(String key, Contact contact) {
+        Set<Contact> s = entries.get(key);
+        if (s != null) {
+            s.remove(contact);
+            if (s.isEmpty()) {
+                entries.remove(key);
+            }
+        }
+    }
+
+    int distinctValues() {
+        return entries.size();
+    }
+
+    @Override
+    public String toString() {
+        return "index(" + field + ", " + distinctValues() + " values)";
+    }
+}
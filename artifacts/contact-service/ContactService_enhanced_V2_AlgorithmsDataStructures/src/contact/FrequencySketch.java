@@ -0,0 +1,110 @@
+package contact;
+
+/**
+ * Approximate access counts for contact IDs in a fixed amount of memory.
+ *
+ * A count-min sketch with four rows of 4-bit counters packed sixteen to a
+ * long. Each ID maps to one counter per row and its estimate is the
+ * smallest of the four, so collisions can only overestimate. Counters
+ * saturate at 15. After {@code 10 * width} increments every counter is
+ * halved, so old popularity fades and the sketch follows a shifting
+ * working set.
+ *
+ * Not thread-safe; callers synchronize.
+ */
+final class FrequencySketch {
+
+    private static final int MAX_COUNT = 15;
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L};
+    private static final long HALF_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param expectedItems number of distinct IDs that should be told apart,
+     *        normally the hot tier capacity
+     * @throws IllegalArgumentException if expectedItems is not positive
+     */
+    FrequencySketch(int expectedItems) {
+        if (expectedItems <= 0) {
+            throw new IllegalArgumentException("expectedItems must be positive");
+        }
+        // A long holds four counters of each row, so items / 4 longs give every row one counter per item
+        int longs = Integer.highestOneBit(Math.max(16, Math.min(expectedItems, 1 << 26) / 4) - 1) << 1;
+        table = new long[longs];
+        mask = longs - 1;
+        sampleSize = 10 * Math.min(expectedItems, Integer.MAX_VALUE / 10);
+    }
+
+    /**
+     * Counts one access.
+     *
+     * @param id contact ID
+     */
+    void increment(String id) {
+        int hash = spread(id.hashCode());
+        boolean added = false;
+        for (int row = 0; row < SEEDS.length; row++) {
+            added |= incrementAt(slot(hash, row), nibble(hash, row));
+        }
+        if (added && ++additions >= sampleSize) {
+            age();
+        }
+    }
+
+    /**
+     * @param id contact ID
+     * @return estimated recent accesses, 0 to 15
+     */
+    int frequency(String id) {
+        int hash = spread(id.hashCode());
+        int min = MAX_COUNT;
+        for (int row = 0; row < SEEDS.length; row++) {
+            int count = (int) (table[slot(hash, row)] >>> (nibble(hash, row) << 2)) & 0xF;
+            min = Math.min(min, count);
+        }
+        return min;
+    }
+
+    // ---- private helpers ----
+
+    private int slot(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private static int nibble(int hash, int row) {
+        // Each row uses its own quarter of the sixteen counters in a long
+        return (row << 2) + ((hash >>> (row << 3)) & 3);
+    }
+
+    private boolean incrementAt(int i, int nibble) {
+        int shift = nibble << 2;
+        long counter = 0xFL << shift;
+        if ((table[i] & counter) == counter) {
+            return false;
+        }
+        table[i] += 1L << shift;
+        return true;
+    }
+
+    private void age() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & HALF_MASK;
+        }
+        additions /= 2;
+    }
+
+    private static int spread(int h) {
+        h ^= h >>> 17;
+        h *= 0xED5AD4BB;
+        h ^= h >>> 11;
+        h *= 0xAC4C1B51;
+        h ^= h >>> 15;
+        return h;
+    }
+}
@@ -0,0 +1,136 @@
+package contact;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Counts contacts per group, where the group is derived from one field
+ * (e.g. the first three digits of the phone number).
+ *
+ * Adds, deletes and updates adjust a single counter. Counts live in a
+ * ConcurrentHashMap, so they can be read at any time without the service
+ * lock; a rebuild fills a fresh map in parallel and swaps it in whole.
+ */
+public class GroupCountAggregate implements ContactAggregate {
+
+    private final String name;
+    private final ContactQuery.Field field;
+    private final Function<String, String> groupOf;
+    private volatile ConcurrentHashMap<String, Long> counts = new ConcurrentHashMap<>();
+    private final AtomicLong total = new AtomicLong();
+
+    /**
+     * Creates a group-by-count aggregate.
+     *
+     * @param name aggregate name
+     * @param field field the group is derived from
+     * @param groupOf maps a field value to its group key
+     * @throws IllegalArgumentException if any argument is null
+     */
+    public GroupCountAggregate(String name, ContactQuery.Field field, Function<String, String> groupOf) {
+        if (name == null || field == null || groupOf == null) {
+            throw new IllegalArgumentException("name, field and groupOf cannot be null");
+        }
+        this.name = name;
+        this.field = field;
+        this.groupOf = groupOf;
+    }
+
+    /**
+     * Counts per area code: the first three digits of the phone number.
+     *
+     * @return new aggregate named "areaCode"
+     */
+    public static GroupCountAggregate byAreaCode() {
+        return new GroupCountAggregate("areaCode", ContactQuery.Field.PHONE, p -> p.substring(0, 3));
+    }
+
+    /**
+     * Counts per upper-cased first letter of the last name.
+     *
+     * @return new aggregate named "lastInitial"
+     */
+    public static GroupCountAggregate byLastInitial() {
+        return new GroupCountAggregate("lastInitial", ContactQuery.Field.LAST_NAME,
+                n -> n.isEmpty() ? "" : n.substring(0, 1).toUpperCase(Locale.ROOT));
+    }
+
+    @Override
+    public String getName() {return name;}
+
+    /**
+     * @param group group key
+     * @return number of contacts in the group
+     */
+    public long getCount(String group) {
+        Long n = counts.get(group);
+        return n == null ? 0 : n;
+    }
+
+    /**
+     * @return a sorted copy of all non-empty groups and their counts
+     */
+    public Map<String, Long> getCounts() {
+        return new TreeMap<>(counts);
+    }
+
+    /**
+     * @return number of contacts counted
+     */
+    public long getTotal() {return total.get();}
+
+    // ---- ContactAggregate ----
+
+    @Override
+    public void contactAdded(Contact contact) {
+        increment(counts, groupOf.apply(field.get(contact)));
+        total.incrementAndGet();
+    }
+
+    @Override
+    public void contactDeleted(Contact contact) {
+        decrement(groupOf.apply(field.get(contact)));
+        total.decrementAndGet();
+    }
+
+    @Override
+    public void contactUpdated(Contact contact, ContactField changed, String oldValue, String newValue) {
+        if (ContactQuery.Field.of(changed) != field) {
+            return;
+        }
+        String before = groupOf.apply(oldValue);
+        String after = groupOf.apply(newValue);
+        if (!before.equals(after)) {
+            decrement(before);
+            increment(counts, after);
+        }
+    }
+
+    @Override
+    public void rebuild(Collection<Contact> contacts) {
+        ConcurrentHashMap<String, Long> fresh = new ConcurrentHashMap<>();
+        contacts.parallelStream().forEach(c -> increment(fresh, groupOf.apply(field.get(c))));
+        counts = fresh;
+        total.set(contacts.size());
+    }
+
+    // ---- private helpers ----
+
+    private static void increment(ConcurrentHashMap<String, Long> map, String group) {
+        map.merge(group, 1L, Long::sum);
+    }
+
+    private void decrement(String group) {
+        counts.computeIfPresent(group, (k, n) -> n <= 1 ? null : n - 1);
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + getCounts();
+    }
+}
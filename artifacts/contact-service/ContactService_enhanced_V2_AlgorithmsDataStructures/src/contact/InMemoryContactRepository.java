@@ -0,0 +1,123 @@
+package contact;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Repository backed by a {@link ContactService} with nothing on disk.
+ *
+ * The file-backed repositories that keep their working set in memory
+ * extend this class and persist after each change.
+ */
+public class InMemoryContactRepository implements ContactRepository {
+
+    protected final ContactService service;
+
+    /**
+     * Creates an empty repository.
+     */
+    public InMemoryContactRepository() {
+        this(new ContactService());
+    }
+
+    /**
+     * Wraps an existing service.
+     *
+     * @param service service holding the contacts
+     * @throws IllegalArgumentException if service is null
+     */
+    public InMemoryContactRepository(ContactService service) {
+        if (service == null) {
+            throw new IllegalArgumentException("service cannot be null");
+        }
+        this.service = service;
+    }
+
+    /**
+     * @return the underlying service, e.g. for listeners, indexes or replication
+     */
+    public ContactService getService() {return service;}
+
+    @Override
+    public void add(Contact contact) {
+        service.addContact(contact);
+    }
+
+    @Override
+    public void addAll(List<Contact> contacts) {
+        // The service lock keeps the check and the inserts atomic
+        synchronized (service) {
+            checkNew(contacts);
+            for (Contact c : contacts) {
+                service.addContact(c);
+            }
+        }
+    }
+
+    @Override
+    public Contact get(String id) {
+        return service.getContactById(id);
+    }
+
+    @Override
+    public void update(String id, ContactField field, String value) {
+        if (field == null) {
+            throw new IllegalArgumentException("field cannot be null");
+        }
+        switch (field) {
+            case FIRST_NAME: service.updateFirstName(id, value); break;
+            case LAST_NAME:  service.updateLastName(id, value); break;
+            case PHONE:      service.updatePhone(id, value); break;
+            default:         service.updateAddress(id, value);
+        }
+    }
+
+    @Override
+    public void delete(String id) {
+        service.deleteContact(id);
+    }
+
+    @Override
+    public int size() {
+        return service.size();
+    }
+
+    @Override
+    public void forEach(Consumer<? super Contact> action) {
+        // A snapshot does not block writers while the caller works through it
+        try (ContactSnapshot snap = service.snapshot()) {
+            snap.forEach(action::accept);
+        }
+    }
+
+    @Override
+    public List<Contact> query(ContactQuery query) {
+        return service.query(query);
+    }
+
+    @Override
+    public void close() {
+        // nothing to release
+    }
+
+    /**
+     * Checks a batch against the rules of {@link ContactRepository#addAll}
+     * without changing anything. Must be called under the service lock.
+     */
+    void checkNew(List<Contact> contacts) {
+        if (contacts == null) {
+            throw new IllegalArgumentException("contacts cannot be null");
+        }
+        Set<String> seen = new HashSet<>(contacts.size() * 4 / 3 + 1);
+        for (Contact c : contacts) {
+            if (c == null) {
+                throw new IllegalArgumentException("contact cannot be null");
+            }
+            if (!seen.add(c.getContactID()) || service.containsContact(c.getContactID())) {
+                throw new IllegalArgumentException("contact ID already exists");
+            }
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package contact;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.zip.CRC32C;
+
+/**
+ * A field index saved as a sorted array of (value, contact ID) records,
+ * read straight from a memory-mapped file.
+ *
+ * Layout, big-endian:
+ * <pre>
+ * magic "CIDX", version, field ordinal, data file stamp (long), count,
+ * records per block, data bytes, CRC32C of the preceding header bytes
+ * CRC32C of each block
+ * count + 1 record offsets into the data area
+ * records: value and ID, each a length byte and Latin-1 or UTF-16 chars
+ * </pre>
+ * The stamp (length and CRC32C of the contacts file) ties the file to one
+ * version of the contacts, so a file saved before any record changed, even
+ * one edited in place at the same size, is recognized as stale. Opening
+ * checks only the header; each block of {@value #BLOCK_RECORDS} records is
+ * checked against its CRC the first time it is read, so a restart does not
+ * page in the whole file. Records are ordered by value, then ID, and are
+ * found by binary search.
+ *
+ * Not thread-safe; the owning index is used under the service lock.
+ */
+final class IndexFile {
+
+    static final int BLOCK_RECORDS = 4096;
+
+    private static final int MAGIC = 0x43494458; // "CIDX"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 8 + 4 + 4 + 4;
+    private static final int UTF16 = 0x80;
+
+    private final Path path;
+    private final ContactQuery.Field field;
+    private final ByteBuffer file;
+    private final int count;
+    private final int offsetsAt;
+    private final int dataAt;
+    private final BitSet verified;
+
+    private IndexFile(Path path, ContactQuery.Field field, ByteBuffer file, int count) {
+        this.path = path;
+        this.field = field;
+        this.file = file;
+        this.count = count;
+        this.offsetsAt = HEADER_BYTES + 4 + 4 * blocks(count);
+        this.dataAt = offsetsAt + 4 * (count + 1);
+        this.verified = new BitSet(blocks(count));
+    }
+
+    /**
+     * Writes an index of the given contacts. The bytes go to a temporary
+     * sibling that is then moved over {@code target}, so an index still
+     * mapped from the old file keeps its old bytes instead of seeing a
+     * truncated or half-written file.
+     *
+     * @param target file to write (replaced)
+     * @param field indexed field
+     * @param dataStamp stamp of the contacts file the contacts were saved to
+     * @param contacts contacts to index
+     * @throws IOException if the file cannot be written
+     */
+    static void write(Path target, ContactQuery.Field field, long dataStamp, Collection<Contact> contacts) throws IOException {
+        Contact[] sorted = contacts.toArray(new Contact[0]);
+        Arrays.parallelSort(sorted, Comparator.comparing((Contact c) -> field.get(c)).thenComparing(Contact::getContactID));
+
+        int count = sorted.length;
+        int dataBytes = 0;
+        for (Contact c : sorted) {
+            dataBytes += encodedLength(field.get(c)) + encodedLength(c.getContactID());
+        }
+        int offsetsAt = HEADER_BYTES + 4 + 4 * blocks(count);
+        int dataAt = offsetsAt + 4 * (count + 1);
+        ByteBuffer out = ByteBuffer.allocate(dataAt + dataBytes);
+        out.putInt(MAGIC).putInt(VERSION).putInt(field.ordinal()).putLong(dataStamp)
+           .putInt(count).putInt(BLOCK_RECORDS).putInt(dataBytes);
+        CRC32C crc = new CRC32C();
+        crc.update(out.array(), 0, HEADER_BYTES);
+        out.putInt((int) crc.getValue());
+
+        out.position(dataAt);
+        for (int i = 0; i < count; i++) {
+            out.putInt(offsetsAt + 4 * i, out.position() - dataAt);
+            encode(out, field.get(sorted[i]));
+            encode(out, sorted[i].getContactID());
+        }
+        out.putInt(offsetsAt + 4 * count, out.position() - dataAt);
+
+        IndexFile layout = new IndexFile(target, field, out, count);
+        for (int b = 0; b < blocks(count); b++) {
+            out.putInt(HEADER_BYTES + 4 + 4 * b, layout.blockCrc(b));
+        }
+        out.clear();
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (out.hasRemaining()) {
+                    ch.write(out);
+                }
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            Files.deleteIfExists(tmp);
+            throw ex;
+        }
+    }
+
+    /**
+     * Maps an index file if it matches the expected field and contacts file.
+     *
+     * @param source index file
+     * @param field field the caller wants
+     * @param dataStamp stamp of the contacts file as loaded
+     * @param expectedCount number of contacts loaded
+     * @return the mapped index, or null if the file is missing, stale or damaged
+     * @throws IOException if the file cannot be read
+     */
+    static IndexFile open(Path source, ContactQuery.Field field, long dataStamp, int expectedCount) throws IOException {
+        MappedByteBuffer file;
+        try (FileChannel ch = FileChannel.open(source, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < HEADER_BYTES + 4 || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            file = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(file.slice(0, HEADER_BYTES));
+        if (file.getInt(HEADER_BYTES) != (int) crc.getValue()
+                || file.getInt(0) != MAGIC || file.getInt(4) != VERSION
+                || file.getInt(8) != field.ordinal() || file.getLong(12) != dataStamp
+                || file.getInt(20) != expectedCount || file.getInt(24) != BLOCK_RECORDS) {
+            return null;
+        }
+        IndexFile index = new IndexFile(source, field, file, expectedCount);
+        if ((long) index.dataAt + file.getInt(28) != file.capacity()) {
+            return null; // truncated or padded
+        }
+        return index;
+    }
+
+    Path getPath() {return path;}
+    ContactQuery.Field getField() {return field;}
+    int size() {return count;}
+
+    /**
+     * @return position of the first record whose value is at least {@code key}
+     *         (greater than it if not inclusive), or {@link #size()} if none
+     * @throws IllegalStateException if a block read on the way is damaged
+     */
+    int search(String key, boolean inclusive) {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = value(mid).compareTo(key);
+            if (cmp < 0 || (cmp == 0 && !inclusive)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @throws IllegalStateException if the record's block is damaged
+     */
+    String value(int i) {
+        return decode(recordAt(i));
+    }
+
+    /**
+     * @throws IllegalStateException if the record's block is damaged
+     */
+    String id(int i) {
+        int pos = recordAt(i);
+        return decode(pos + 1 + byteLength(file.get(pos)));
+    }
+
+    // ---- private helpers ----
+
+    private int recordAt(int i) {
+        int block = i / BLOCK_RECORDS;
+        if (!verified.get(block)) {
+            verify(block);
+        }
+        return dataAt + file.getInt(offsetsAt + 4 * i);
+    }
+
+    private void verify(int block) {
+        int first = block * BLOCK_RECORDS;
+        int last = Math.min(first + BLOCK_RECORDS, count);
+        int dataBytes = file.capacity() - dataAt;
+        int prev = file.getInt(offsetsAt + 4 * first);
+        for (int i = first + 1; i <= last; i++) {
+            int next = file.getInt(offsetsAt + 4 * i);
+            if (next < prev || next > dataBytes) {
+                throw new IllegalStateException("Damaged index file: " + path);
+            }
+            prev = next;
+        }
+        if (file.getInt(HEADER_BYTES + 4 + 4 * block) != blockCrc(block)) {
+            throw new IllegalStateException("Damaged index file: " + path);
+        }
+        verified.set(block);
+    }
+
+    /**
+     * CRC32C over a block's offsets (including the end offset) and records.
+     */
+    private int blockCrc(int block) {
+        int first = block * BLOCK_RECORDS;
+        int last = Math.min(first + BLOCK_RECORDS, count);
+        CRC32C crc = new CRC32C();
+        crc.update(file.slice(offsetsAt + 4 * first, 4 * (last - first + 1)));
+        int from = file.getInt(offsetsAt + 4 * first);
+        int to = file.getInt(offsetsAt + 4 * last);
+        crc.update(file.slice(dataAt + from, to - from));
+        return (int) crc.getValue();
+    }
+
+    private String decode(int pos) {
+        int header = file.get(pos) & 0xFF;
+        byte[] bytes = new byte[byteLength((byte) header)];
+        file.get(pos + 1, bytes);
+        return new String(bytes, (header & UTF16) == 0 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_16BE);
+    }
+
+    private static int byteLength(byte header) {
+        int len = header & ~UTF16 & 0xFF;
+        return (header & UTF16) == 0 ? len : len * 2;
+    }
+
+    private static void encode(ByteBuffer out, String v) {
+        boolean latin1 = isLatin1(v);
+        out.put((byte) (latin1 ? v.length() : v.length() | UTF16));
+        out.put(v.getBytes(latin1 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_16BE));
+    }
+
+    private static int encodedLength(String v) {
+        return 1 + (isLatin1(v) ? v.length() : v.length() * 2);
+    }
+
+    private static boolean isLatin1(String v) {
+        for (int i = 0; i < v.length(); i++) {
+            if (v.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int blocks(int count) {
+        return (count + BLOCK_RECORDS - 1) / BLOCK_RECORDS;
+    }
+}
@@ -0,0 +1,153 @@
+package contact;
+
+/**
+ * Fixed-size log-linear latency histogram (nanoseconds), accurate to
+ * within 1% at any magnitude. Not thread-safe: keep one per thread and
+ * {@link #add(LatencyHistogram) merge} them at the end.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 8;
+    private static final int SUB_COUNT = 1 << SUB_BITS;   // 128 (HALF) linear buckets per power of two, so < 0.8% error
+    private static final int HALF = SUB_COUNT / 2;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * HALF + HALF;
+
+    private final long[] counts = new long[BUCKETS];
+    private long total;
+    private long max;
+    private double sum;
+
+    /**
+     * Records one latency.
+     *
+     * @param nanos latency in nanoseconds (negative values count as 0)
+     */
+    public void record(long nanos) {
+        record(nanos, 1);
+    }
+
+    /**
+     * Records the same latency several times.
+     *
+     * @param nanos latency in nanoseconds (negative values count as 0)
+     * @param count number of occurrences
+     */
+    public void record(long nanos, long count) {
+        long v = Math.max(0, nanos);
+        counts[index(v)] += count;
+        total += count;
+        sum += (double) v * count;
+        max = Math.max(max, v);
+    }
+
+    /**
+     * Adds all counts from another histogram.
+     *
+     * @param other histogram to merge
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Returns a copy corrected for coordinated omission: for every recorded
+     * latency longer than the expected interval between requests, the
+     * requests that would have been issued (and delayed) meanwhile are added
+     * with linearly decreasing latencies.
+     *
+     * @param expectedIntervalNanos expected time between requests from one caller
+     * @return corrected histogram
+     */
+    public LatencyHistogram correctedFor(long expectedIntervalNanos) {
+        LatencyHistogram out = new LatencyHistogram();
+        out.add(this);
+        if (expectedIntervalNanos <= 0) {
+            return out;
+        }
+        for (int i = 0; i < BUCKETS; i++) {
+            long n = counts[i];
+            if (n == 0) {
+                continue;
+            }
+            for (long v = valueOf(i) - expectedIntervalNanos; v >= expectedIntervalNanos; v -= expectedIntervalNanos) {
+                out.record(v, n);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @return number of recorded values
+     */
+    public long getCount() {return total;}
+
+    /**
+     * @return largest recorded value
+     */
+    public long getMax() {return max;}
+
+    /**
+     * @return mean of recorded values
+     */
+    public double getMean() {
+        return total == 0 ? 0 : sum / total;
+    }
+
+    /**
+     * Returns the value at a percentile.
+     *
+     * @param percentile percentile in [0, 100]
+     * @return value (upper bound of its bucket, capped at the max)
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100.0 * total);
+        rank = Math.max(1, Math.min(total, rank));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(max, valueOf(i));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Formats count, mean and common percentiles in microseconds.
+     *
+     * @return one-line summary
+     */
+    public String summary() {
+        return String.format("n=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+                total, getMean() / 1e3,
+                getValueAtPercentile(50) / 1e3, getValueAtPercentile(90) / 1e3,
+                getValueAtPercentile(99) / 1e3, getValueAtPercentile(99.9) / 1e3, max / 1e3);
+    }
+
+    // ---- private helpers ----
+
+    private static int index(long v) {
+        if (v < SUB_COUNT) {
+            return (int) v;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(v) - (SUB_BITS - 1);
+        return shift * HALF + (int) (v >>> shift);
+    }
+
+    private static long valueOf(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int shift = index / HALF - 1;
+        long sub = index - (long) shift * HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,142 @@
+package contact;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Field index restored from an {@link IndexFile}: the saved records answer
+ * lookups straight from the mapped file, and the in-memory tree inherited
+ * from FieldIndex holds only contacts changed since the restart.
+ *
+ * Saved records hold contact IDs, which are resolved through the service's
+ * map. Once a contact is added, updated on the indexed field or deleted,
+ * its ID is marked changed: saved records for it are skipped and its
+ * current value, if any, lives in the tree. If a block of the file turns
+ * out to be damaged, or the whole data set is replaced, the index drops
+ * the file and rebuilds itself in memory.
+ */
+final class MappedFieldIndex extends FieldIndex {
+
+    private IndexFile base;
+    private Map<String, Contact> contacts;
+    private final Set<String> changed = new HashSet<>();
+
+    /**
+     * @param base saved index, already checked against the loaded data
+     * @param contacts the service's live ID-to-contact map
+     */
+    MappedFieldIndex(IndexFile base, Map<String, Contact> contacts) {
+        super(base.getField());
+        this.base = base;
+        this.contacts = contacts;
+    }
+
+    /**
+     * @return true while lookups are still served from the file
+     */
+    boolean isMapped() {return base != null;}
+
+    @Override
+    long estimate(ContactPredicate.Leaf leaf, long cap) {
+        long n = super.estimate(leaf, cap);
+        if (base == null || n > cap) {
+            return n;
+        }
+        try {
+            int[] range = range(leaf);
+            return n + range[1] - range[0];
+        } catch (IllegalStateException ex) {
+            rebuild();
+            return super.estimate(leaf, cap);
+        }
+    }
+
+    @Override
+    List<Contact> lookup(ContactPredicate.Leaf leaf) {
+        if (base == null) {
+            return super.lookup(leaf);
+        }
+        List<Contact> out = new ArrayList<>();
+        try {
+            int[] range = range(leaf);
+            for (int i = range[0]; i < range[1]; i++) {
+                String id = base.id(i);
+                Contact c = changed.contains(id) ? null : contacts.get(id);
+                if (c != null) {
+                    out.add(c);
+                }
+            }
+        } catch (IllegalStateException ex) {
+            rebuild();
+            return super.lookup(leaf);
+        }
+        out.addAll(super.lookup(leaf));
+        return out;
+    }
+
+    // ---- ContactListener ----
+
+    @Override
+    public void contactAdded(Contact contact) {
+        if (base != null) {
+            changed.add(contact.getContactID());
+        }
+        super.contactAdded(contact);
+    }
+
+    @Override
+    public void contactDeleted(Contact contact) {
+        if (base != null) {
+            changed.add(contact.getContactID());
+        }
+        super.contactDeleted(contact);
+    }
+
+    @Override
+    public void contactUpdated(Contact contact, ContactField field, String oldValue, String newValue) {
+        if (base != null && ContactQuery.Field.of(field) == getField() && changed.add(contact.getContactID())) {
+            super.contactAdded(contact); // first change: the old value is only in the file
+            return;
+        }
+        super.contactUpdated(contact, field, oldValue, newValue);
+    }
+
+    @Override
+    public void contactsLoaded(List<Contact> loaded) {
+        base = null;
+        contacts = null;
+        changed.clear();
+        super.contactsLoaded(loaded);
+    }
+
+    @Override
+    public String toString() {
+        if (base == null) {
+            return super.toString();
+        }
+        return "index(" + getField() + ", " + base.size() + " mapped, " + changed.size() + " changed)";
+    }
+
+    // ---- private helpers ----
+
+    /**
+     * @return positions [from, to) of the saved records a leaf selects
+     */
+    private int[] range(ContactPredicate.Leaf leaf) {
+        String from = lowerBound(leaf);
+        String to = upperBound(leaf);
+        int lo = from == null ? 0 : base.search(from, true);
+        int hi = to == null ? base.size() : base.search(to, leaf.op != ContactPredicate.Op.EQUALS);
+        return new int[] {lo, Math.max(lo, hi)};
+    }
+
+    private void rebuild() {
+        super.contactsLoaded(new ArrayList<>(contacts.values()));
+        base = null;
+        contacts = null;
+        changed.clear();
+    }
+}
@@ -0,0 +1,197 @@
+package contact;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact variant of {@link Contact} that keeps every text field in one
+ * {@code byte[]} and the phone number in a {@code long}.
+ *
+ * A Contact costs eleven objects (itself plus five Strings and their
+ * backing arrays); a PackedContact costs two. Run {@link ContactFootprint}
+ * for the byte counts. Getters decode on demand and
+ * setters re-pack the record, so it suits large, mostly-read data sets.
+ * The public methods and validation rules are the same as Contact's.
+ *
+ * Record layout: four length-prefixed fields (ID, first, last, address).
+ * A length byte with the high bit set means the field is UTF-16 because it
+ * holds characters outside Latin-1; otherwise it is one byte per char.
+ */
+public class PackedContact {
+
+    private static final int ID = 0, FIRST = 1, LAST = 2, ADDRESS = 3;
+    private static final int UTF16 = 0x80;
+
+    private byte[] record;
+    private long phone;
+
+    /**
+     * Creates a new PackedContact with validated fields.
+     *
+     * @param contactID unique identifier for the contact (max 10 characters)
+     * @param firstName contact's first name (max 10 characters)
+     * @param lastName contact's last name (max 10 characters)
+     * @param phone contact's phone number (exactly 10 digits)
+     * @param address contact's street address (max 30 characters)
+     * @throws IllegalArgumentException if any parameter is invalid
+     */
+    public PackedContact(String contactID, String firstName, String lastName, String phone, String address) {
+        if(contactID == null || contactID.isBlank() || contactID.length()>10) {throw new IllegalArgumentException("Invalid contact ID");}
+        if(firstName == null || firstName.isBlank() || firstName.length()>10) {throw new IllegalArgumentException("Invalid first name");}
+        if(lastName == null || lastName.isBlank() || lastName.length()>10) {throw new IllegalArgumentException("Invalid last name");}
+        if(phone == null || !phone.matches("\\d{10}")) {throw new IllegalArgumentException("Invalid phone number");}
+        if(address == null || address.isBlank() || address.length()>30) {throw new IllegalArgumentException("Invalid address");}
+        this.record = pack(contactID, firstName, lastName, address);
+        this.phone = Long.parseLong(phone);
+    }
+
+    /**
+     * Packs an existing Contact.
+     *
+     * @param c contact to copy
+     * @return packed copy
+     * @throws IllegalArgumentException if c is null
+     */
+    public static PackedContact of(Contact c) {
+        if (c == null) {
+            throw new IllegalArgumentException("contact cannot be null");
+        }
+        // Setters accept values the constructor would not (e.g. empty names), so copy raw
+        return new PackedContact(pack(c.getContactID(), c.getFirstName(), c.getLastName(), c.getAddress()),
+                Long.parseLong(c.getPhone()));
+    }
+
+    private PackedContact(byte[] record, long phone) {
+        this.record = record;
+        this.phone = phone;
+    }
+
+    /**
+     * Rebuilds a contact from the values of {@link #packedRecord()} and
+     * {@link #packedPhone()}, e.g. after copying them out of a buffer.
+     */
+    static PackedContact fromPacked(byte[] record, long phone) {
+        return new PackedContact(record, phone);
+    }
+
+    /**
+     * Decodes this record into a regular Contact.
+     *
+     * @return new Contact with the same values
+     */
+    public Contact toContact() {
+        return Contact.restore(getContactID(), getFirstName(), getLastName(), getPhone(), getAddress());
+    }
+
+    // --- Getters ---
+    public String getContactID() {return field(ID);}
+    public String getFirstName() {return field(FIRST);}
+    public String getLastName() {return field(LAST);}
+    public String getPhone() {
+        String digits = Long.toString(phone);
+        return "0000000000".substring(digits.length()) + digits;
+    }
+    public String getAddress() {return field(ADDRESS);}
+
+    /**
+     * Updates the contact's first name.
+     *
+     * @param firstName new first name (up to 10 characters)
+     * @throws IllegalArgumentException if the value is invalid
+     */
+    public void setFirstName(String firstName) {
+        if (firstName == null || firstName.length() > 10){throw new IllegalArgumentException("Invalid first name");}
+        replace(FIRST, firstName);
+    }
+    /**
+     * Updates the contact's last name.
+     *
+     * @param lastName new last name (up to 10 characters)
+     * @throws IllegalArgumentException if the value is invalid
+     */
+    public void setLastName(String lastName) {
+        if (lastName == null || lastName.length() > 10){throw new IllegalArgumentException("Invalid last name");}
+        replace(LAST, lastName);
+    }
+    /**
+     * Updates the contact's phone number.
+     *
+     * @param phone new phone number (exactly 10 digits)
+     * @throws IllegalArgumentException if the value is invalid
+     */
+    public void setPhone(String phone) {
+        if (phone == null || !phone.matches("\\d{10}")) {throw new IllegalArgumentException("Invalid phone");}
+        this.phone = Long.parseLong(phone);
+    }
+    /**
+     * Updates the contact's address.
+     *
+     * @param address new address (up to 30 characters)
+     * @throws IllegalArgumentException if the value is invalid
+     */
+    public void setAddress(String address) {
+        if (address == null || address.length() > 30){throw new IllegalArgumentException("Invalid address");}
+        replace(ADDRESS, address);
+    }
+
+    /**
+     * @return size of the packed text record in bytes
+     */
+    public int recordLength() {return record.length;}
+
+    byte[] packedRecord() {return record;}
+    long packedPhone() {return phone;}
+
+    // ---- private helpers ----
+
+    private String field(int index) {
+        int pos = offset(index);
+        int header = record[pos] & 0xFF;
+        int len = header & ~UTF16;
+        if ((header & UTF16) == 0) {
+            return new String(record, pos + 1, len, StandardCharsets.ISO_8859_1);
+        }
+        return new String(record, pos + 1, len * 2, StandardCharsets.UTF_16BE);
+    }
+
+    private int offset(int index) {
+        int pos = 0;
+        for (int i = 0; i < index; i++) {
+            int header = record[pos] & 0xFF;
+            int len = header & ~UTF16;
+            pos += 1 + ((header & UTF16) == 0 ? len : len * 2);
+        }
+        return pos;
+    }
+
+    private void replace(int index, String value) {
+        String[] values = {field(ID), field(FIRST), field(LAST), field(ADDRESS)};
+        values[index] = value;
+        record = pack(values[ID], values[FIRST], values[LAST], values[ADDRESS]);
+    }
+
+    private static byte[] pack(String... values) {
+        int size = 0;
+        for (String v : values) {
+            size += 1 + (isLatin1(v) ? v.length() : v.length() * 2);
+        }
+        byte[] out = new byte[size];
+        int pos = 0;
+        for (String v : values) {
+            boolean latin1 = isLatin1(v);
+            byte[] bytes = v.getBytes(latin1 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_16BE);
+            out[pos++] = (byte) (latin1 ? v.length() : v.length() | UTF16);
+            System.arraycopy(bytes, 0, out, pos, bytes.length);
+            pos += bytes.length;
+        }
+        return out;
+    }
+
+    private static boolean isLatin1(String v) {
+        for (int i = 0; i < v.length(); i++) {
+            if (v.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,400 @@
+package contact;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * A ContactService split into independent hash partitions ("shards").
+ *
+ * Each shard has its own ContactService, read/write lock and optional
+ * storage segment. Single-key operations lock only the shard that owns
+ * the ID; bulk operations (load, scan, search, save) run across all
+ * shards in parallel.
+ *
+ * The shard count is saved next to the segments ({@code <baseFile>.shards}),
+ * and storage written with a different count is refused rather than read
+ * into the wrong shards.
+ */
+public class PartitionedContactService {
+
+    private final Shard[] shards;
+    private final Path baseFile;
+
+    /**
+     * Creates an in-memory partitioned service.
+     *
+     * @param shardCount number of partitions (must be positive)
+     * @throws IllegalArgumentException if shardCount is not positive
+     */
+    public PartitionedContactService(int shardCount) {
+        this(shardCount, null, false);
+    }
+
+    /**
+     * Creates a partitioned service backed by one storage segment per shard.
+     * Segment {@code i} is stored at {@code <baseFile>.<i>}.
+     *
+     * @param shardCount number of partitions (must be positive)
+     * @param baseFile base path for the storage segments, or null for no persistence
+     * @param checksummed true to write checksummed segments
+     * @throws IllegalArgumentException if shardCount is not positive
+     */
+    public PartitionedContactService(int shardCount, Path baseFile, boolean checksummed) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("shardCount must be positive");
+        }
+        shards = new Shard[shardCount];
+        this.baseFile = baseFile;
+        for (int i = 0; i < shardCount; i++) {
+            ContactStorage segment = baseFile == null ? null : new ContactStorage(segmentFile(i), checksummed);
+            shards[i] = new Shard(segment);
+        }
+    }
+
+    /**
+     * @return number of partitions
+     */
+    public int getShardCount() {return shards.length;}
+
+    /**
+     * Returns the partition that owns a contact ID.
+     *
+     * @param id contact ID
+     * @return shard index in {@code [0, getShardCount())}
+     */
+    public int shardOf(String id) {
+        int h = id.hashCode();
+        h ^= (h >>> 16); // spread high bits like HashMap does
+        return Math.floorMod(h, shards.length);
+    }
+
+    // ---- bulk operations (parallel across shards) ----
+
+    /**
+     * Loads a full list of contacts, replacing existing data. The list is
+     * split by partition and each shard loads its part in parallel. Every
+     * part is checked before any shard is replaced, so a bad record leaves
+     * all shards unchanged.
+     *
+     * @param loaded list of contacts to load
+     * @throws IllegalArgumentException if the list is null, contains null, or has duplicate IDs
+     */
+    public void loadAll(List<Contact> loaded) {
+        if (loaded == null) {
+            throw new IllegalArgumentException("loaded contacts cannot be null");
+        }
+        List<List<Contact>> parts = new ArrayList<>(shards.length);
+        int expected = loaded.size() / shards.length + 1;
+        for (int i = 0; i < shards.length; i++) {
+            parts.add(new ArrayList<>(expected));
+        }
+        for (Contact c : loaded) {
+            if (c == null) {
+                throw new IllegalArgumentException("contact cannot be null");
+            }
+            parts.get(shardOf(c.getContactID())).add(c);
+        }
+        installAll(parts);
+    }
+
+    /**
+     * Loads every storage segment in parallel, then routes the contacts to
+     * their shards as {@link #loadAll(List)} does. All segments are read
+     * before any shard is replaced, so an unreadable segment leaves all
+     * shards unchanged.
+     *
+     * @throws IllegalStateException if the service has no storage, the storage was saved
+     *         with a different shard count, or a segment cannot be read
+     * @throws IllegalArgumentException if the segments hold duplicate IDs
+     */
+    public void loadFromStorage() {
+        requireStorage();
+        checkShardCount();
+        loadAll(IntStream.range(0, shards.length).parallel()
+                .mapToObj(i -> shards[i].storage.load())
+                .flatMap(List::stream)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Saves every shard to its storage segment in parallel.
+     *
+     * @throws IllegalStateException if the service has no storage, the storage was saved
+     *         with a different shard count, or a segment cannot be written
+     */
+    public void saveAll() {
+        requireStorage();
+        checkShardCount();
+        IntStream.range(0, shards.length).parallel().forEach(i -> shards[i].saveLocked());
+        writeShardCount();
+    }
+
+    /**
+     * Returns a copy of all stored contacts, gathered from every shard in parallel.
+     *
+     * @return list of contacts
+     */
+    public List<Contact> getAllContacts() {
+        return IntStream.range(0, shards.length).parallel()
+                .mapToObj(i -> shards[i].read(ContactService::getAllContacts))
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns every contact matching a predicate, scanning shards in parallel.
+     *
+     * @param filter condition to test
+     * @return matching contacts
+     * @throws IllegalArgumentException if filter is null
+     */
+    public List<Contact> search(Predicate<Contact> filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("filter cannot be null");
+        }
+        return IntStream.range(0, shards.length).parallel()
+                .mapToObj(i -> shards[i].read(s -> {
+                    List<Contact> hits = new ArrayList<>();
+                    for (Contact c : s.getAllContacts()) {
+                        if (filter.test(c)) {
+                            hits.add(c);
+                        }
+                    }
+                    return hits;
+                }))
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return total number of contacts across all shards
+     */
+    public int size() {
+        return IntStream.range(0, shards.length).parallel().map(i -> shards[i].read(ContactService::size)).sum();
+    }
+
+    // ---- single-key operations (one shard) ----
+
+    /**
+     * Adds a new contact to the shard that owns its ID.
+     *
+     * @param contact contact to add
+     * @throws IllegalArgumentException if the contact is null or the ID already exists
+     */
+    public void addContact(Contact contact) {
+        if (contact == null) {
+            throw new IllegalArgumentException("contact cannot be null");
+        }
+        shardFor(contact.getContactID()).write(s -> s.addContact(contact));
+    }
+
+    /**
+     * Deletes an existing contact by ID.
+     *
+     * @param id contact ID to delete
+     * @throws IllegalArgumentException if the ID is null or not found
+     */
+    public void deleteContact(String id) {
+        shardFor(id).write(s -> s.deleteContact(id));
+    }
+
+    /**
+     * Updates the first name of a contact by ID.
+     *
+     * @param id contact ID
+     * @param first new first name
+     * @throws IllegalArgumentException if the ID is invalid or not found
+     */
+    public void updateFirstName(String id, String first) {
+        shardFor(id).write(s -> s.updateFirstName(id, first));
+    }
+
+    /**
+     * Updates the last name of a contact by ID.
+     *
+     * @param id contact ID
+     * @param last new last name
+     * @throws IllegalArgumentException if the ID is invalid or not found
+     */
+    public void updateLastName(String id, String last) {
+        shardFor(id).write(s -> s.updateLastName(id, last));
+    }
+
+    /**
+     * Updates the phone number of a contact by ID.
+     *
+     * @param id contact ID
+     * @param phone new phone number
+     * @throws IllegalArgumentException if the ID is invalid or not found
+     */
+    public void updatePhone(String id, String phone) {
+        shardFor(id).write(s -> s.updatePhone(id, phone));
+    }
+
+    /**
+     * Updates the address of a contact by ID.
+     *
+     * @param id contact ID
+     * @param address new address
+     * @throws IllegalArgumentException if the ID is invalid or not found
+     */
+    public void updateAddress(String id, String address) {
+        shardFor(id).write(s -> s.updateAddress(id, address));
+    }
+
+    /**
+     * Returns a contact by ID.
+     *
+     * @param id contact ID
+     * @return contact
+     * @throws IllegalArgumentException if the ID is null or not found
+     */
+    public Contact getContactById(String id) {
+        return shardFor(id).read(s -> s.getContactById(id));
+    }
+
+    /**
+     * Saves only the shard that owns an ID, e.g. after a single-key update.
+     *
+     * @param id contact ID whose shard should be saved
+     * @throws IllegalStateException if the service has no storage, the storage was saved
+     *         with a different shard count, or the segment cannot be written
+     */
+    public void saveShardOf(String id) {
+        requireStorage();
+        checkShardCount();
+        shardFor(id).saveLocked();
+        writeShardCount();
+    }
+
+    // ---- private helpers ----
+
+    private Shard shardFor(String id) {
+        if (id == null) {
+            throw new IllegalArgumentException("contact ID cannot be null");
+        }
+        return shards[shardOf(id)];
+    }
+
+    /**
+     * Checks every shard's part, then replaces each shard's data with it.
+     * Parts must be split with {@link #shardOf}: equal IDs then land in
+     * the same part, so per-part checks cover the whole data set.
+     */
+    private void installAll(List<List<Contact>> parts) {
+        IntStream.range(0, shards.length).parallel().forEach(i -> {
+            Set<String> ids = new HashSet<>(parts.get(i).size() * 2);
+            for (Contact c : parts.get(i)) {
+                if (c == null) {
+                    throw new IllegalArgumentException("contact cannot be null");
+                }
+                if (!ids.add(c.getContactID())) {
+                    throw new IllegalArgumentException("contact ID already exists");
+                }
+            }
+        });
+        IntStream.range(0, shards.length).parallel().forEach(i -> shards[i].write(s -> s.loadAll(parts.get(i))));
+    }
+
+    private void requireStorage() {
+        if (shards[0].storage == null) {
+            throw new IllegalStateException("partitioned service has no storage");
+        }
+    }
+
+    private Path segmentFile(int i) {
+        return baseFile.resolveSibling(baseFile.getFileName() + "." + i);
+    }
+
+    private Path shardCountFile() {
+        return baseFile.resolveSibling(baseFile.getFileName() + ".shards");
+    }
+
+    /**
+     * Refuses storage written with another shard count: its segments hold
+     * other partitions, and any beyond this count would be ignored. A
+     * missing count file (nothing saved yet, or an older save) is checked
+     * by looking for a segment past the last shard.
+     */
+    private void checkShardCount() {
+        Path countFile = shardCountFile();
+        int saved;
+        try {
+            saved = Files.exists(countFile)
+                    ? Integer.parseInt(Files.readString(countFile, StandardCharsets.UTF_8).trim())
+                    : Files.exists(segmentFile(shards.length)) ? -1 : shards.length;
+        } catch (IOException | NumberFormatException ex) {
+            throw new IllegalStateException("Failed to read shard count from file: " + countFile, ex);
+        }
+        if (saved != shards.length) {
+            throw new IllegalStateException("storage at " + baseFile + " was saved with "
+                    + (saved < 0 ? "more" : String.valueOf(saved)) + " shards, not " + shards.length);
+        }
+    }
+
+    private void writeShardCount() {
+        Path countFile = shardCountFile();
+        if (Files.exists(countFile)) {
+            return; // checkShardCount already matched it
+        }
+        try {
+            Files.writeString(countFile, shards.length + "\n", StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to write shard count to file: " + countFile, ex);
+        }
+    }
+
+    /**
+     * One partition: a plain ContactService guarded by its own lock.
+     */
+    private static class Shard {
+        private final ContactService service = new ContactService();
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Object saveLock = new Object();
+        private final ContactStorage storage;
+
+        Shard(ContactStorage storage) {
+            this.storage = storage;
+        }
+
+        <T> T read(Function<ContactService, T> op) {
+            lock.readLock().lock();
+            try {
+                return op.apply(service);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void write(Consumer<ContactService> op) {
+            lock.writeLock().lock();
+            try {
+                op.accept(service);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void saveLocked() {
+            // Saves of one shard run one at a time and each copies the data only
+            // once the previous save is written, so an older copy can never land
+            // last. Readers and writers only wait for the copy, not the file.
+            synchronized (saveLock) {
+                List<Contact> copy = read(ContactService::getAllContacts);
+                storage.save(copy);
+            }
+        }
+    }
+}
@@ -0,0 +1,470 @@
+package contact;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Sound-alike index over first and last names for
+ * {@link ContactService#soundsLike(String, int)}.
+ *
+ * Every name is encoded once, when the contact is added or the name
+ * changes, with two phonetic keys: Metaphone, which knows English spelling
+ * rules ("Smith" and "Smyth" are both SM0, "Philips" and "Filips" both
+ * FLPS), and American Soundex, which is coarser and catches some of what
+ * Metaphone splits ("Meyer" MYR and "Maier" MR both have Soundex M600).
+ * Each key maps to the names that have it and their contacts, so a query
+ * looks up two keys per field and scores each candidate name once, however
+ * many contacts share it.
+ *
+ * A candidate's score averages a phonetic part (1 for a Metaphone match,
+ * 0.5 for Soundex only) and the spelling similarity of the two names:
+ * one minus their edit distance, with adjacent swaps counting as one
+ * edit, over the longer length. A contact matching on both names counts
+ * its better one.
+ *
+ * Not thread-safe: the service calls it under its lock.
+ */
+final class PhoneticIndex implements ContactListener {
+
+    private static final int MAX_CODE = 6;
+
+    private final NameCodes first = new NameCodes();
+    private final NameCodes last = new NameCodes();
+    private int[] prev = new int[16];
+    private int[] curr = new int[16];
+    private int[] prevPrev = new int[16];
+
+    /**
+     * Returns the contacts whose first or last name sounds like a name,
+     * best match first.
+     *
+     * @param name name as heard
+     * @param limit maximum results
+     * @return matching contacts, best first; ties by ID
+     */
+    List<Contact> match(String name, int limit) {
+        String m = metaphone(name);
+        String s = soundex(name);
+        if (m.isEmpty() && s.isEmpty()) {
+            return new ArrayList<>(0);
+        }
+        // A contact can match on both names, so keep twice the limit and drop repeats at the end
+        int keep = limit > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : limit * 2;
+        PriorityQueue<Match> top = new PriorityQueue<>(Collections.reverseOrder()); // worst kept on top
+        String heard = name.trim();
+        score(first, m, s, heard, keep, top);
+        score(last, m, s, heard, keep, top);
+
+        List<Match> sorted = new ArrayList<>(top);
+        Collections.sort(sorted);
+        Set<Contact> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Contact> out = new ArrayList<>(Math.min(limit, sorted.size()));
+        for (Match x : sorted) {
+            if (out.size() < limit && seen.add(x.contact)) {
+                out.add(x.contact);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * American Soundex: the first letter, then up to three digits for the
+     * following consonant groups, padded with zeros. Letters with accents
+     * count as their base letter; other characters are ignored.
+     *
+     * @param name name to encode
+     * @return code such as "S530", or "" if the name has no letters
+     */
+    static String soundex(String name) {
+        String letters = letters(name);
+        if (letters.isEmpty()) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(4).append(letters.charAt(0));
+        char lastDigit = soundexDigit(letters.charAt(0));
+        for (int i = 1; i < letters.length() && sb.length() < 4; i++) {
+            char ch = letters.charAt(i);
+            char d = soundexDigit(ch);
+            if (d != '0' && d != lastDigit) {
+                sb.append(d);
+            }
+            // H and W do not separate equal codes; vowels do
+            if (ch != 'H' && ch != 'W') {
+                lastDigit = d;
+            }
+        }
+        while (sb.length() < 4) {
+            sb.append('0');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Original Metaphone (Philips, 1990), cut to {@value #MAX_CODE}
+     * characters, with repeated sounds collapsed. "0" stands for "th" and
+     * "X" for "sh"/"ch".
+     *
+     * @param name name to encode
+     * @return code such as "SM0", or "" if the name has no letters
+     */
+    static String metaphone(String name) {
+        String w = letters(name);
+        if (w.isEmpty()) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(MAX_CODE);
+        int i = 0;
+        if (w.startsWith("AE") || w.startsWith("GN") || w.startsWith("KN") || w.startsWith("PN") || w.startsWith("WR")) {
+            i = 1;
+        } else if (w.charAt(0) == 'X') {
+            sb.append('S');
+            i = 1;
+        } else if (w.startsWith("WH")) {
+            sb.append('W');
+            i = 2;
+        }
+        for (; i < w.length() && sb.length() < MAX_CODE; i++) {
+            char c = w.charAt(i);
+            if (c == at(w, i - 1) && c != 'C') {
+                continue;
+            }
+            char next = at(w, i + 1);
+            switch (c) {
+                case 'A': case 'E': case 'I': case 'O': case 'U':
+                    if (i == 0) {
+                        emit(sb, c);
+                    }
+                    break;
+                case 'B':
+                    if (!(i == w.length() - 1 && at(w, i - 1) == 'M')) {
+                        emit(sb, 'B');
+                    }
+                    break;
+                case 'C':
+                    if (next == 'I' && at(w, i + 2) == 'A') {
+                        emit(sb, 'X');
+                    } else if (next == 'H') {
+                        emit(sb, at(w, i - 1) == 'S' ? 'K' : 'X');
+                        i++;
+                    } else if (next == 'I' || next == 'E' || next == 'Y') {
+                        if (at(w, i - 1) != 'S') {
+                            emit(sb, 'S');
+                        }
+                    } else {
+                        emit(sb, 'K');
+                    }
+                    break;
+                case 'D':
+                    if (next == 'G' && isFrontVowel(at(w, i + 2))) {
+                        emit(sb, 'J');
+                        i++;
+                    } else {
+                        emit(sb, 'T');
+                    }
+                    break;
+                case 'G':
+                    if (next == 'H' && i + 2 < w.length() && !isVowel(at(w, i + 2))) {
+                        break; // "gh" before a consonant: "night"
+                    }
+                    if (next == 'N' && (i + 2 == w.length() || w.startsWith("ED", i + 2) && i + 4 == w.length())) {
+                        break; // "gn" and "gned" at the end: "sign"
+                    }
+                    emit(sb, isFrontVowel(next) && at(w, i - 1) != 'G' ? 'J' : 'K');
+                    break;
+                case 'H':
+                    if (isVowel(next) && "CSPTG".indexOf(at(w, i - 1)) < 0) {
+                        emit(sb, 'H');
+                    }
+                    break;
+                case 'K':
+                    if (at(w, i - 1) != 'C') {
+                        emit(sb, 'K');
+                    }
+                    break;
+                case 'P':
+                    if (next == 'H') {
+                        emit(sb, 'F');
+                        i++;
+                    } else {
+                        emit(sb, 'P');
+                    }
+                    break;
+                case 'Q':
+                    emit(sb, 'K');
+                    break;
+                case 'S':
+                    if (next == 'H') {
+                        emit(sb, 'X');
+                        i++;
+                    } else if (next == 'I' && (at(w, i + 2) == 'O' || at(w, i + 2) == 'A')) {
+                        emit(sb, 'X');
+                    } else {
+                        emit(sb, 'S');
+                    }
+                    break;
+                case 'T':
+                    if (next == 'I' && (at(w, i + 2) == 'O' || at(w, i + 2) == 'A')) {
+                        emit(sb, 'X');
+                    } else if (next == 'H') {
+                        emit(sb, '0');
+                        i++;
+                    } else if (!(next == 'C' && at(w, i + 2) == 'H')) {
+                        emit(sb, 'T');
+                    }
+                    break;
+                case 'V':
+                    emit(sb, 'F');
+                    break;
+                case 'W':
+                case 'Y':
+                    if (isVowel(next)) {
+                        emit(sb, c);
+                    }
+                    break;
+                case 'X':
+                    emit(sb, 'K');
+                    if (sb.length() < MAX_CODE) {
+                        emit(sb, 'S');
+                    }
+                    break;
+                case 'Z':
+                    emit(sb, 'S');
+                    break;
+                default: // F, J, L, M, N, R
+                    emit(sb, c);
+            }
+        }
+        return sb.toString();
+    }
+
+    // ---- ContactListener ----
+
+    @Override
+    public void contactAdded(Contact contact) {
+        first.add(contact.getFirstName(), contact);
+        last.add(contact.getLastName(), contact);
+    }
+
+    @Override
+    public void contactDeleted(Contact contact) {
+        first.remove(contact.getFirstName(), contact);
+        last.remove(contact.getLastName(), contact);
+    }
+
+    @Override
+    public void contactUpdated(Contact contact, ContactField field, String oldValue, String newValue) {
+        if (field == ContactField.FIRST_NAME) {
+            first.remove(oldValue, contact);
+            first.add(newValue, contact);
+        } else if (field == ContactField.LAST_NAME) {
+            last.remove(oldValue, contact);
+            last.add(newValue, contact);
+        }
+    }
+
+    @Override
+    public void contactsLoaded(List<Contact> contacts) {
+        first.clear();
+        last.clear();
+        for (Contact c : contacts) {
+            contactAdded(c);
+        }
+    }
+
+    // ---- private helpers ----
+
+    private void score(NameCodes codes, String m, String s, String heard, int keep, PriorityQueue<Match> top) {
+        Map<String, Set<Contact>> strong = codes.byMetaphone.getOrDefault(m, Collections.emptyMap());
+        for (Map.Entry<String, Set<Contact>> e : strong.entrySet()) {
+            offer(e.getValue(), score(1.0, heard, e.getKey()), keep, top);
+        }
+        for (Map.Entry<String, Set<Contact>> e : codes.bySoundex.getOrDefault(s, Collections.emptyMap()).entrySet()) {
+            if (!strong.containsKey(e.getKey())) {
+                offer(e.getValue(), score(0.5, heard, e.getKey()), keep, top);
+            }
+        }
+    }
+
+    private double score(double phonetic, String heard, String value) {
+        int longer = Math.max(heard.length(), value.length());
+        double similarity = longer == 0 ? 1 : 1 - (double) distance(heard, value) / longer;
+        return (phonetic + similarity) / 2;
+    }
+
+    private static void offer(Set<Contact> contacts, double score, int keep, PriorityQueue<Match> top) {
+        for (Contact c : contacts) {
+            if (top.size() >= keep && score < top.peek().score) {
+                return; // the whole group scores the same
+            }
+            top.offer(new Match(c, score));
+            if (top.size() > keep) {
+                top.poll();
+            }
+        }
+    }
+
+    /**
+     * Case-insensitive edit distance where an insertion, deletion,
+     * substitution or swap of two adjacent characters each cost one
+     * (optimal string alignment).
+     */
+    private int distance(String a, String b) {
+        int n = b.length();
+        if (prev.length <= n) {
+            prev = new int[n + 1];
+            curr = new int[n + 1];
+            prevPrev = new int[n + 1];
+        }
+        for (int j = 0; j <= n; j++) {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            curr[0] = i;
+            char ca = Character.toLowerCase(a.charAt(i - 1));
+            for (int j = 1; j <= n; j++) {
+                char cb = Character.toLowerCase(b.charAt(j - 1));
+                int d = Math.min(Math.min(curr[j - 1], prev[j]) + 1, prev[j - 1] + (ca == cb ? 0 : 1));
+                if (i > 1 && j > 1 && ca == Character.toLowerCase(b.charAt(j - 2))
+                        && Character.toLowerCase(a.charAt(i - 2)) == cb) {
+                    d = Math.min(d, prevPrev[j - 2] + 1);
+                }
+                curr[j] = d;
+            }
+            int[] t = prevPrev;
+            prevPrev = prev;
+            prev = curr;
+            curr = t;
+        }
+        return prev[n];
+    }
+
+    /**
+     * Upper-case A-Z only, with accents stripped so accented letters count
+     * as their base letter.
+     */
+    private static String letters(String name) {
+        String plain = Normalizer.normalize(name, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(plain.length());
+        for (int i = 0; i < plain.length(); i++) {
+            char c = Character.toUpperCase(plain.charAt(i));
+            if (c >= 'A' && c <= 'Z') {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static char soundexDigit(char c) {
+        switch (c) {
+            case 'B': case 'F': case 'P': case 'V':
+                return '1';
+            case 'C': case 'G': case 'J': case 'K': case 'Q': case 'S': case 'X': case 'Z':
+                return '2';
+            case 'D': case 'T':
+                return '3';
+            case 'L':
+                return '4';
+            case 'M': case 'N':
+                return '5';
+            case 'R':
+                return '6';
+            default:
+                return '0'; // vowels, H, W, Y
+        }
+    }
+
+    /**
+     * Appends a sound unless it repeats the previous one ("dt" in "Schmidt").
+     */
+    private static void emit(StringBuilder sb, char c) {
+        if (sb.length() == 0 || sb.charAt(sb.length() - 1) != c) {
+            sb.append(c);
+        }
+    }
+
+    private static char at(String w, int i) {
+        return i >= 0 && i < w.length() ? w.charAt(i) : 0;
+    }
+
+    private static boolean isVowel(char c) {
+        return c == 'A' || c == 'E' || c == 'I' || c == 'O' || c == 'U';
+    }
+
+    private static boolean isFrontVowel(char c) {
+        return c == 'E' || c == 'I' || c == 'Y';
+    }
+
+    /**
+     * Names of one field by Metaphone and Soundex code, each with the
+     * contacts that have it. Grouping by name means a query scores every
+     * distinct spelling once, however many contacts share it.
+     */
+    private static final class NameCodes {
+        final Map<String, Map<String, Set<Contact>>> byMetaphone = new HashMap<>();
+        final Map<String, Map<String, Set<Contact>>> bySoundex = new HashMap<>();
+
+        void add(String name, Contact c) {
+            put(byMetaphone, metaphone(name), name, c);
+            put(bySoundex, soundex(name), name, c);
+        }
+
+        void remove(String name, Contact c) {
+            take(byMetaphone, metaphone(name), name, c);
+            take(bySoundex, soundex(name), name, c);
+        }
+
+        void clear() {
+            byMetaphone.clear();
+            bySoundex.clear();
+        }
+
+        private static void put(Map<String, Map<String, Set<Contact>>> map, String code, String name, Contact c) {
+            if (!code.isEmpty()) {
+                map.computeIfAbsent(code, k -> new HashMap<>())
+                   .computeIfAbsent(name, k -> Collections.newSetFromMap(new IdentityHashMap<>()))
+                   .add(c);
+            }
+        }
+
+        private static void take(Map<String, Map<String, Set<Contact>>> map, String code, String name, Contact c) {
+            Map<String, Set<Contact>> names = map.get(code);
+            Set<Contact> s = names == null ? null : names.get(name);
+            if (s != null) {
+                s.remove(c);
+                if (s.isEmpty()) {
+                    names.remove(name);
+                    if (names.isEmpty()) {
+                        map.remove(code);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A scored candidate. Natural order is best first: higher score, then ID.
+     */
+    private static final class Match implements Comparable<Match> {
+        final Contact contact;
+        final double score;
+
+        Match(Contact contact, double score) {
+            this.contact = contact;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(Match o) {
+            int cmp = Double.compare(o.score, score);
+            return cmp != 0 ? cmp : contact.getContactID().compareTo(o.contact.getContactID());
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package contact;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Chooses how to find the contacts matching a predicate.
+ *
+ * A primary-key lookup beats any index; otherwise the index with the
+ * smallest estimated result is used and the full predicate is re-checked
+ * on its output. An OR is answered by a union only when every branch can
+ * use an index. Anything else falls back to a parallel scan of the map.
+ */
+final class QueryPlanner {
+
+    private static final int PARALLEL_THRESHOLD = 10_000;
+
+    private final Map<String, Contact> primary;
+    private final Map<ContactQuery.Field, FieldIndex> indexes;
+
+    QueryPlanner(Map<String, Contact> primary, Map<ContactQuery.Field, FieldIndex> indexes) {
+        this.primary = primary;
+        this.indexes = indexes;
+    }
+
+    /**
+     * Runs a query. Must be called while holding the service lock.
+     */
+    List<Contact> execute(ContactQuery query) {
+        Plan access = plan(query);
+        ContactPredicate where = query.getWhere();
+        Comparator<Contact> order = query.comparator();
+        int limit = query.getLimit();
+
+        Stream<Contact> rows = access.rows();
+        if (access instanceof FullScan && ((FullScan) access).parallel) {
+            rows = rows.parallel();
+        }
+        rows = rows.filter(where::test);
+        if (order != null && limit != Integer.MAX_VALUE) {
+            // Top-k: a bounded heap per worker, O(n log k) instead of a full sort
+            return rows.collect(() -> new TopK(order, limit), TopK::offer, TopK::merge).sorted();
+        }
+        if (order != null) {
+            rows = rows.sorted(order);
+        }
+        if (limit != Integer.MAX_VALUE) {
+            rows = rows.limit(limit);
+        }
+        return rows.collect(Collectors.toList());
+    }
+
+    /**
+     * Describes the plan for a query, one operator per line.
+     */
+    String explain(ContactQuery query) {
+        StringBuilder sb = new StringBuilder();
+        String indent = "";
+        if (query.getLimit() != Integer.MAX_VALUE && query.getOrderBy() != null) {
+            sb.append("TopK ").append(query.getLimit()).append(" by ").append(query.getOrderBy())
+              .append(query.isDescending() ? " desc" : " asc").append('\n');
+            indent += "  ";
+        } else if (query.getLimit() != Integer.MAX_VALUE) {
+            sb.append("Limit ").append(query.getLimit()).append('\n');
+            indent += "  ";
+        }
+        if (query.getOrderBy() != null && query.getLimit() == Integer.MAX_VALUE) {
+            sb.append(indent).append("Sort by ").append(query.getOrderBy())
+              .append(query.isDescending() ? " desc" : " asc").append('\n');
+            indent += "  ";
+        }
+        sb.append(indent).append("Filter ").append(query.getWhere()).append('\n');
+        plan(query).describe(sb, indent + "  ");
+        return sb.toString();
+    }
+
+    /**
+     * Plans a whole query. A limit without an order keeps a full scan
+     * sequential: it can stop early, and it returns the same first rows
+     * as long as the map is unchanged, where a parallel scan returns any.
+     */
+    private Plan plan(ContactQuery query) {
+        Plan access = plan(query.getWhere(), primary.size());
+        if (access instanceof FullScan && query.getOrderBy() == null && query.getLimit() != Integer.MAX_VALUE) {
+            ((FullScan) access).parallel = false;
+        }
+        return access;
+    }
+
+    /**
+     * Plans a predicate. Index counts stop once they pass {@code cap}, the
+     * estimate a plan must beat to be chosen; a plan that passes it is
+     * returned with its partial count and loses to the one that set the cap.
+     */
+    Plan plan(ContactPredicate p, long cap) {
+        if (p instanceof ContactPredicate.Leaf) {
+            ContactPredicate.Leaf leaf = (ContactPredicate.Leaf) p;
+            if (leaf.field == ContactQuery.Field.ID && leaf.op == ContactPredicate.Op.EQUALS) {
+                return new KeyLookup(leaf);
+            }
+            FieldIndex index = indexes.get(leaf.field);
+            if (index != null && index.supports(leaf)) {
+                return new IndexScan(index, leaf, index.estimate(leaf, cap));
+            }
+            return new FullScan(primary.size());
+        }
+
+        ContactPredicate.Junction j = (ContactPredicate.Junction) p;
+        if (j.and) {
+            // Most selective indexed branch wins; the rest is checked by the filter
+            // and the best so far caps how far the others are counted, so
+            // the likely narrow branches are planned first to set a low cap
+            List<ContactPredicate> parts = new ArrayList<>(j.parts);
+            parts.sort(Comparator.comparingInt(QueryPlanner::breadth));
+            Plan best = null;
+            for (ContactPredicate part : parts) {
+                Plan candidate = plan(part, best == null ? cap : Math.min(cap, best.estimate));
+                if (best == null || candidate.estimate < best.estimate) {
+                    best = candidate;
+                }
+            }
+            return best;
+        }
+
+        // A union only pays while it stays below a scan and below the cap
+        long limit = Math.min(cap, primary.size());
+        List<Plan> branches = new ArrayList<>();
+        long total = 0;
+        for (ContactPredicate part : j.parts) {
+            Plan branch = plan(part, Math.max(0, limit - total));
+            if (branch instanceof FullScan) {
+                return new FullScan(primary.size()); // one unindexed branch forces a scan
+            }
+            branches.add(branch);
+            total += branch.estimate;
+            if (total >= limit) {
+                return new FullScan(primary.size());
+            }
+        }
+        return new Union(branches, total);
+    }
+
+    /**
+     * Rough breadth of a predicate before counting: an equality usually
+     * matches few rows, a prefix more, a range or anything else the most.
+     */
+    private static int breadth(ContactPredicate p) {
+        if (!(p instanceof ContactPredicate.Leaf)) {
+            return 3;
+        }
+        switch (((ContactPredicate.Leaf) p).op) {
+            case EQUALS: return 0;
+            case PREFIX: return 1;
+            case RANGE:  return 2;
+            default:     return 3;
+        }
+    }
+
+    /**
+     * Keeps the k smallest contacts seen so far under an ordering. The heap is
+     * ordered largest-first so the current k-th element is always at the head
+     * and can be evicted in O(log k).
+     */
+    static final class TopK {
+        private final Comparator<Contact> order;
+        private final int k;
+        private final PriorityQueue<Contact> heap;
+
+        TopK(Comparator<Contact> order, int k) {
+            this.order = order;
+            this.k = k;
+            this.heap = new PriorityQueue<>(Math.min(k, 1024) + 1, order.reversed());
+        }
+
+        void offer(Contact c) {
+            if (heap.size() < k) {
+                heap.add(c);
+            } else if (order.compare(c, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(c);
+            }
+        }
+
+        void merge(TopK other) {
+            for (Contact c : other.heap) {
+                offer(c);
+            }
+        }
+
+        List<Contact> sorted() {
+            List<Contact> out = new ArrayList<>(heap);
+            out.sort(order);
+            return out;
+        }
+    }
+
+    // ---- plan operators ----
+
+    abstract static class Plan {
+        final long estimate;
+
+        Plan(long estimate) {
+            this.estimate = estimate;
+        }
+
+        abstract Stream<Contact> rows();
+
+        abstract void describe(StringBuilder sb, String indent);
+    }
+
+    private final class KeyLookup extends Plan {
+        private final ContactPredicate.Leaf leaf;
+
+        KeyLookup(ContactPredicate.Leaf leaf) {
+            super(1);
+            this.leaf = leaf;
+        }
+
+        @Override
+        Stream<Contact> rows() {
+            Contact c = primary.get(leaf.value);
+            return c == null ? Stream.empty() : Stream.of(c);
+        }
+
+        @Override
+        void describe(StringBuilder sb, String indent) {
+            sb.append(indent).append("KeyLookup ").append(leaf).append(" (est. 1 row)\n");
+        }
+    }
+
+    private static final class IndexScan extends Plan {
+        private final FieldIndex index;
+        private final ContactPredicate.Leaf leaf;
+
+        IndexScan(FieldIndex index, ContactPredicate.Leaf leaf, long estimate) {
+            super(estimate);
+            this.index = index;
+            this.leaf = leaf;
+        }
+
+        @Override
+        Stream<Contact> rows() {
+            return index.lookup(leaf).stream();
+        }
+
+        @Override
+        void describe(StringBuilder sb, String indent) {
+            sb.append(indent).append("IndexScan ").append(leaf).append(" (est. ").append(estimate).append(" rows)\n");
+        }
+    }
+
+    private static final class Union extends Plan {
+        private final List<Plan> branches;
+
+        Union(List<Plan> branches, long estimate) {
+            super(estimate);
+            this.branches = branches;
+        }
+
+        @Override
+        Stream<Contact> rows() {
+            Set<Contact> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Plan b : branches) {
+                b.rows().forEach(seen::add);
+            }
+            return seen.stream();
+        }
+
+        @Override
+        void describe(StringBuilder sb, String indent) {
+            sb.append(indent).append("Union (est. ").append(estimate).append(" rows)\n");
+            for (Plan b : branches) {
+                b.describe(sb, indent + "  ");
+            }
+        }
+    }
+
+    private final class FullScan extends Plan {
+        boolean parallel = primary.size() >= PARALLEL_THRESHOLD;
+
+        FullScan(long estimate) {
+            super(estimate);
+        }
+
+        @Override
+        Stream<Contact> rows() {
+            Collection<Contact> all = primary.values();
+            return all.stream();
+        }
+
+        @Override
+        void describe(StringBuilder sb, String indent) {
+            sb.append(indent).append(parallel ? "ParallelScan" : "Scan")
+              .append(" (").append(estimate).append(" rows)\n");
+        }
+    }
+}
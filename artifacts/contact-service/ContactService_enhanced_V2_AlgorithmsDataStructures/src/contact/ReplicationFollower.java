@@ -0,0 +1,216 @@
+package contact;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only replica of a ContactService fed by a {@link ReplicationPrimary}.
+ *
+ * A background thread connects to the primary, applies the snapshot and the
+ * change stream to a local ContactService, and acknowledges each batch.
+ * Reads go straight to {@link #getService()}. If the connection drops the
+ * follower reconnects and starts again from a fresh snapshot.
+ */
+public class ReplicationFollower implements AutoCloseable {
+
+    private static final ContactField[] FIELDS = ContactField.values();
+
+    private final String host;
+    private final int port;
+    private final ContactService service = new ContactService();
+    private final Thread worker;
+    private volatile boolean running = true;
+    private volatile Socket socket;
+    private volatile boolean connected;
+    private volatile long appliedSeq;
+    private volatile long primarySeq;
+    private volatile long lastPrimaryMillis;
+
+    /**
+     * Starts a follower for the primary at host:port.
+     *
+     * @param host primary host, normally "localhost"
+     * @param port primary replication port
+     * @throws IllegalArgumentException if host is null
+     */
+    public ReplicationFollower(String host, int port) {
+        if (host == null) {
+            throw new IllegalArgumentException("host cannot be null");
+        }
+        this.host = host;
+        this.port = port;
+        worker = new Thread(this::run, "replication-follower");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Returns the local replica. Callers must only read from it; local
+     * writes would be overwritten on the next resync.
+     *
+     * @return replica service
+     */
+    public ContactService getService() {return service;}
+
+    /**
+     * @return true while connected to the primary
+     */
+    public boolean isConnected() {return connected;}
+
+    /**
+     * @return sequence number of the last change applied locally
+     */
+    public long getAppliedSequence() {return appliedSeq;}
+
+    /**
+     * @return number of changes the primary has logged that are not yet applied here
+     */
+    public long getLagEntries() {return Math.max(0, primarySeq - appliedSeq);}
+
+    /**
+     * How stale the replica is: zero when caught up, otherwise the age of the
+     * newest entry applied here. Includes clock differences, which are zero
+     * for two processes on one machine.
+     *
+     * @return lag in milliseconds, or -1 if nothing has been received yet
+     */
+    public long getLagMillis() {
+        long t = lastPrimaryMillis;
+        if (t == 0) {
+            return -1;
+        }
+        return getLagEntries() == 0 ? 0 : Math.max(0, System.currentTimeMillis() - t);
+    }
+
+    /**
+     * Stops the follower and closes the connection.
+     */
+    @Override
+    public void close() {
+        running = false;
+        Socket s = socket;
+        if (s != null) {
+            try {
+                s.close();
+            } catch (IOException ex) {
+                // Already closed
+            }
+        }
+        worker.interrupt();
+    }
+
+    // ---- private helpers ----
+
+    private void run() {
+        while (running) {
+            try (Socket s = new Socket()) {
+                socket = s;
+                s.connect(new InetSocketAddress(host, port));
+                s.setTcpNoDelay(true);
+                stream(s);
+            } catch (IOException | IllegalArgumentException ex) {
+                // Connection lost or replica diverged; reconnect and resync from a snapshot
+            } finally {
+                connected = false;
+            }
+            if (running) {
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException ex) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void stream(Socket s) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 64 * 1024));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+        if (in.readInt() != ReplicationProtocol.MAGIC) {
+            throw new IOException("not a replication stream");
+        }
+        connected = true;
+        while (running) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                applyEntry(in);
+            }
+            out.writeLong(appliedSeq);
+            out.flush();
+        }
+    }
+
+    private void applyEntry(DataInputStream in) throws IOException {
+        long seq = in.readLong();
+        long millis = in.readLong();
+        byte op = in.readByte();
+        switch (op) {
+            case ReplicationProtocol.SNAPSHOT:
+                int n = in.readInt();
+                List<Contact> all = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    all.add(ReplicationProtocol.readContact(in));
+                }
+                service.loadAll(all);
+                break;
+            case ReplicationProtocol.ADD:
+                service.addContact(ReplicationProtocol.readContact(in));
+                break;
+            case ReplicationProtocol.DELETE:
+                service.deleteContact(in.readUTF());
+                break;
+            case ReplicationProtocol.UPDATE:
+                String id = in.readUTF();
+                ContactField field = FIELDS[in.readByte()];
+                String value = in.readUTF();
+                switch (field) {
+                    case FIRST_NAME: service.updateFirstName(id, value); break;
+                    case LAST_NAME:  service.updateLastName(id, value); break;
+                    case PHONE:      service.updatePhone(id, value); break;
+                    default:         service.updateAddress(id, value); break;
+                }
+                break;
+            case ReplicationProtocol.HEARTBEAT:
+                break;
+            default:
+                throw new IOException("unknown replication op " + op);
+        }
+        // A heartbeat carries the primary's head sequence, not an applied change
+        primarySeq = Math.max(primarySeq, seq);
+        if (op != ReplicationProtocol.HEARTBEAT) {
+            appliedSeq = seq;
+        }
+        lastPrimaryMillis = millis;
+    }
+
+    /**
+     * Runs a follower in its own JVM and prints replication lag once a second.
+     * Usage: {@code java contact.ReplicationFollower <port> [host]}
+     *
+     * @param args port and optional host
+     * @throws InterruptedException if interrupted while sleeping
+     */
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 1) {
+            System.out.println("Usage: java contact.ReplicationFollower <port> [host]");
+            return;
+        }
+        String host = args.length > 1 ? args[1] : "localhost";
+        try (ReplicationFollower follower = new ReplicationFollower(host, Integer.parseInt(args[0]))) {
+            while (true) {
+                Thread.sleep(1000);
+                System.out.println((follower.isConnected() ? "connected" : "disconnected")
+                        + " | contacts: " + follower.getService().size()
+                        + " | applied seq: " + follower.getAppliedSequence()
+                        + " | lag: " + follower.getLagEntries() + " entries, " + follower.getLagMillis() + " ms");
+            }
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package contact;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams every change made to a ContactService to follower processes.
+ *
+ * The primary listens on a loopback TCP port. A follower that connects
+ * first receives a snapshot of the whole data set and then every mutation
+ * in order. Each follower has its own bounded queue and sender thread, so a
+ * slow follower never blocks the primary; if its queue overflows it is
+ * disconnected and resynchronizes from a fresh snapshot when it reconnects.
+ */
+public class ReplicationPrimary implements ContactListener, AutoCloseable {
+
+    private static final int QUEUE_CAPACITY = 65536;
+    private static final int MAX_BATCH = 512;
+    private static final long HEARTBEAT_MILLIS = 1000;
+
+    private final ContactService service;
+    private final ServerSocket server;
+    private final List<FollowerLink> followers = new CopyOnWriteArrayList<>();
+    private final AtomicLong lastSeq = new AtomicLong();
+    private volatile boolean running = true;
+
+    /**
+     * Starts replicating a service on a loopback port.
+     *
+     * @param service service whose changes are replicated
+     * @param port TCP port on 127.0.0.1 (0 picks a free port)
+     * @throws IllegalArgumentException if service is null
+     * @throws IllegalStateException if the port cannot be opened
+     */
+    public ReplicationPrimary(ContactService service, int port) {
+        if (service == null) {
+            throw new IllegalArgumentException("service cannot be null");
+        }
+        this.service = service;
+        try {
+            server = new ServerSocket();
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to open replication port " + port, ex);
+        }
+        service.addListener(this);
+
+        Thread acceptor = new Thread(this::acceptLoop, "replication-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * @return the port followers should connect to
+     */
+    public int getPort() {return server.getLocalPort();}
+
+    /**
+     * @return sequence number of the last change written to the log
+     */
+    public long getLastSequence() {return lastSeq.get();}
+
+    /**
+     * Returns replication lag for every connected follower.
+     *
+     * @return one entry per follower
+     */
+    public List<FollowerStats> getStats() {
+        List<FollowerStats> stats = new ArrayList<>();
+        long last = lastSeq.get();
+        for (FollowerLink f : followers) {
+            stats.add(new FollowerStats(f.name, f.sentSeq, f.ackedSeq, last - f.ackedSeq, f.queue.size()));
+        }
+        return stats;
+    }
+
+    /**
+     * Stops accepting followers and disconnects the current ones.
+     */
+    @Override
+    public void close() {
+        running = false;
+        service.removeListener(this);
+        try {
+            server.close();
+        } catch (IOException ex) {
+            // Nothing useful to do while shutting down
+        }
+        for (FollowerLink f : followers) {
+            f.disconnect();
+        }
+    }
+
+    // ---- ContactListener (runs on the mutating thread under the service lock) ----
+
+    @Override
+    public void contactAdded(Contact contact) {
+        publish(ReplicationProtocol.ADD, copy(contact));
+    }
+
+    @Override
+    public void contactDeleted(Contact contact) {
+        publish(ReplicationProtocol.DELETE, contact.getContactID());
+    }
+
+    @Override
+    public void contactUpdated(Contact contact, ContactField field, String oldValue, String newValue) {
+        publish(ReplicationProtocol.UPDATE, new Object[] {contact.getContactID(), field, newValue});
+    }
+
+    @Override
+    public void contactsLoaded(List<Contact> contacts) {
+        publish(ReplicationProtocol.SNAPSHOT, copyAll(contacts));
+    }
+
+    // ---- private helpers ----
+
+    private void publish(byte op, Object payload) {
+        ReplicationProtocol.Entry e = new ReplicationProtocol.Entry(lastSeq.incrementAndGet(),
+                System.currentTimeMillis(), op, payload);
+        for (FollowerLink f : followers) {
+            if (!f.queue.offer(e)) {
+                f.disconnect(); // too far behind; it will resync on reconnect
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException ex) {
+                if (!running) {
+                    return;
+                }
+                continue;
+            }
+            try {
+                socket.setTcpNoDelay(true);
+                FollowerLink link = new FollowerLink(socket);
+                // Snapshot and registration happen under the service lock, so
+                // no change can fall between the snapshot and the live stream.
+                synchronized (service) {
+                    link.queue.add(new ReplicationProtocol.Entry(lastSeq.get(), System.currentTimeMillis(),
+                            ReplicationProtocol.SNAPSHOT, copyAll(service.getAllContacts())));
+                    followers.add(link);
+                }
+                link.start();
+            } catch (IOException | RuntimeException ex) {
+                // Drop this follower only; it retries, and the acceptor keeps serving others
+                try {
+                    socket.close();
+                } catch (IOException closeEx) {
+                    ex.addSuppressed(closeEx);
+                }
+            }
+        }
+    }
+
+    private static Contact copy(Contact c) {
+        // Contacts are mutable; the log must hold the values at the time of the change.
+        // restore, not the constructor: updates may have left a name or address blank.
+        return Contact.restore(c.getContactID(), c.getFirstName(), c.getLastName(), c.getPhone(), c.getAddress());
+    }
+
+    private static List<Contact> copyAll(List<Contact> contacts) {
+        List<Contact> out = new ArrayList<>(contacts.size());
+        for (Contact c : contacts) {
+            out.add(copy(c));
+        }
+        return out;
+    }
+
+    /**
+     * Replication lag of one follower.
+     */
+    public static class FollowerStats {
+        private final String follower;
+        private final long sentSeq;
+        private final long ackedSeq;
+        private final long lagEntries;
+        private final int queued;
+
+        FollowerStats(String follower, long sentSeq, long ackedSeq, long lagEntries, int queued) {
+            this.follower = follower;
+            this.sentSeq = sentSeq;
+            this.ackedSeq = ackedSeq;
+            this.lagEntries = lagEntries;
+            this.queued = queued;
+        }
+
+        public String getFollower() {return follower;}
+        public long getSentSeq() {return sentSeq;}
+        public long getAckedSeq() {return ackedSeq;}
+        public long getLagEntries() {return lagEntries;}
+        public int getQueued() {return queued;}
+
+        @Override
+        public String toString() {
+            return follower + ": sent=" + sentSeq + " acked=" + ackedSeq + " lag=" + lagEntries + " queued=" + queued;
+        }
+    }
+
+    /**
+     * Connection to one follower with its own queue, sender and ack reader.
+     */
+    private class FollowerLink {
+        final Socket socket;
+        final String name;
+        final BlockingQueue<ReplicationProtocol.Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        volatile long sentSeq;
+        volatile long ackedSeq;
+
+        FollowerLink(Socket socket) {
+            this.socket = socket;
+            this.name = socket.getRemoteSocketAddress().toString();
+        }
+
+        void start() {
+            Thread sender = new Thread(this::sendLoop, "replication-send " + name);
+            sender.setDaemon(true);
+            sender.start();
+            Thread acker = new Thread(this::ackLoop, "replication-ack " + name);
+            acker.setDaemon(true);
+            acker.start();
+        }
+
+        void disconnect() {
+            followers.remove(this);
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                // Already closed
+            }
+        }
+
+        private void sendLoop() {
+            List<ReplicationProtocol.Entry> batch = new ArrayList<>(MAX_BATCH);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024))) {
+                out.writeInt(ReplicationProtocol.MAGIC);
+                while (running && !socket.isClosed()) {
+                    ReplicationProtocol.Entry first = queue.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        first = new ReplicationProtocol.Entry(lastSeq.get(), System.currentTimeMillis(),
+                                ReplicationProtocol.HEARTBEAT, null);
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+
+                    out.writeInt(batch.size());
+                    for (ReplicationProtocol.Entry e : batch) {
+                        write(out, e);
+                    }
+                    out.flush(); // one flush per batch, not per entry
+                    sentSeq = batch.get(batch.size() - 1).seq;
+                    batch.clear();
+                }
+            } catch (IOException | InterruptedException ex) {
+                // Follower went away; it resyncs on reconnect
+            } finally {
+                disconnect();
+            }
+        }
+
+        private void ackLoop() {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+                while (true) {
+                    ackedSeq = in.readLong();
+                }
+            } catch (IOException ex) {
+                disconnect();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void write(DataOutputStream out, ReplicationProtocol.Entry e) throws IOException {
+            out.writeLong(e.seq);
+            out.writeLong(e.millis);
+            out.writeByte(e.op);
+            switch (e.op) {
+                case ReplicationProtocol.SNAPSHOT:
+                    List<Contact> all = (List<Contact>) e.payload;
+                    out.writeInt(all.size());
+                    for (Contact c : all) {
+                        ReplicationProtocol.writeContact(out, c);
+                    }
+                    break;
+                case ReplicationProtocol.ADD:
+                    ReplicationProtocol.writeContact(out, (Contact) e.payload);
+                    break;
+                case ReplicationProtocol.DELETE:
+                    out.writeUTF((String) e.payload);
+                    break;
+                case ReplicationProtocol.UPDATE:
+                    Object[] u = (Object[]) e.payload;
+                    out.writeUTF((String) u[0]);
+                    out.writeByte(((ContactField) u[1]).ordinal());
+                    out.writeUTF((String) u[2]);
+                    break;
+                default:
+                    break; // heartbeat has no payload
+            }
+        }
+    }
+}
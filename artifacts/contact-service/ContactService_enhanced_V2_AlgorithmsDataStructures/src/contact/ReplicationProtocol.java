@@ -0,0 +1,57 @@
+package contact;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Wire format shared by {@link ReplicationPrimary} and {@link ReplicationFollower}.
+ *
+ * The primary sends batches: {@code int count} followed by {@code count}
+ * entries of {@code long seq, long primaryMillis, byte op, payload}. After
+ * applying a batch the follower answers with the {@code long} sequence
+ * number it has applied. The primary never waits for that answer before
+ * sending the next batch, so batches are pipelined.
+ */
+final class ReplicationProtocol {
+
+    static final int MAGIC = 0x43524550; // "CREP"
+
+    static final byte SNAPSHOT  = 0; // int n, n contacts
+    static final byte ADD       = 1; // contact
+    static final byte DELETE    = 2; // id
+    static final byte UPDATE    = 3; // id, field ordinal, value
+    static final byte HEARTBEAT = 4; // no payload; seq is the primary head
+
+    private ReplicationProtocol() {}
+
+    /**
+     * One log entry, already encoded except for its header.
+     */
+    static final class Entry {
+        final long seq;
+        final long millis;
+        final byte op;
+        final Object payload;
+
+        Entry(long seq, long millis, byte op, Object payload) {
+            this.seq = seq;
+            this.millis = millis;
+            this.op = op;
+            this.payload = payload;
+        }
+    }
+
+    static void writeContact(DataOutputStream out, Contact c) throws IOException {
+        out.writeUTF(c.getContactID());
+        out.writeUTF(c.getFirstName());
+        out.writeUTF(c.getLastName());
+        out.writeUTF(c.getPhone());
+        out.writeUTF(c.getAddress());
+    }
+
+    static Contact readContact(DataInputStream in) throws IOException {
+        // Accepts whatever the primary's setters accepted, e.g. a blanked name
+        return Contact.restore(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF());
+    }
+}
@@ -0,0 +1,101 @@
+package contact;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of loading a contacts file, including every line that was dropped.
+ *
+ * Unlike a plain list of contacts, the report makes it possible to tell a
+ * torn write apart from bad input: each dropped line records where it was,
+ * why it was rejected, and whether it was part of a truncated tail.
+ */
+public class StorageLoadReport {
+
+    /**
+     * Why a line was dropped during load.
+     */
+    public enum Reason {
+        MALFORMED,          // wrong number of fields
+        INVALID,            // fields failed Contact validation
+        CHECKSUM_MISMATCH,  // stored CRC32C does not match the record bytes
+        OUT_OF_SEQUENCE,    // sequence number does not follow the previous record
+        TORN_TAIL           // incomplete or corrupt record at end of file
+    }
+
+    /**
+     * A single line that was not turned into a Contact.
+     */
+    public static class DroppedRecord {
+        private final int lineNumber;
+        private final long offset;
+        private final Reason reason;
+        private final String text;
+
+        DroppedRecord(int lineNumber, long offset, Reason reason, String text) {
+            this.lineNumber = lineNumber;
+            this.offset = offset;
+            this.reason = reason;
+            this.text = text;
+        }
+
+        public int getLineNumber() {return lineNumber;}
+        public long getOffset() {return offset;}
+        public Reason getReason() {return reason;}
+        public String getText() {return text;}
+
+        @Override
+        public String toString() {
+            return "line " + lineNumber + " (offset " + offset + "): " + reason + " [" + text + "]";
+        }
+    }
+
+    private final List<Contact> contacts = new ArrayList<>();
+    private final List<DroppedRecord> dropped = new ArrayList<>();
+    private long truncatedBytes;
+    private long lastSequence;
+
+    void addContact(Contact contact) {
+        contacts.add(contact);
+    }
+
+    void drop(int lineNumber, long offset, Reason reason, String text) {
+        dropped.add(new DroppedRecord(lineNumber, offset, reason, text));
+    }
+
+    void setTruncatedBytes(long truncatedBytes) {
+        this.truncatedBytes = truncatedBytes;
+    }
+
+    void setLastSequence(long lastSequence) {
+        this.lastSequence = lastSequence;
+    }
+
+    /**
+     * @return contacts that were loaded successfully, in file order
+     */
+    public List<Contact> getContacts() {return contacts;}
+
+    /**
+     * @return every dropped line, in file order (read-only)
+     */
+    public List<DroppedRecord> getDropped() {return Collections.unmodifiableList(dropped);}
+
+    /**
+     * @return number of bytes cut from the end of the file during recovery
+     */
+    public long getTruncatedBytes() {return truncatedBytes;}
+
+    /**
+     * @return sequence number of the last valid record (checksummed mode only)
+     */
+    public long getLastSequence() {return lastSequence;}
+
+    /**
+     * @return true if nothing was dropped and nothing was truncated
+     */
+    public boolean isClean() {
+        return dropped.isEmpty() && truncatedBytes == 0;
+    }
+}
@@ -0,0 +1,192 @@
+package contact;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+/**
+ * Bounded, thread-safe pool of canonical String instances for field values
+ * that repeat across contacts, such as first and last names.
+ *
+ * {@link #canonicalize} returns the instance already in the pool for an
+ * equal value, so a thousand contacts named "Smith" share one String and
+ * the copies they were built from become garbage. Shared instances also
+ * make {@code String.equals} in index lookups succeed on its identity
+ * check. The pool only holds weak references: once no contact uses a
+ * value any more, the GC frees it and its entry disappears. Values are
+ * spread over lock stripes so concurrent loaders rarely contend. When a
+ * stripe is full, new values pass through unchanged until entries are
+ * freed.
+ *
+ * Unlike {@code String.intern()} the pool is bounded, can be dropped as a
+ * whole, and reports its hit rate and the bytes it saved.
+ */
+public class StringDictionary {
+
+    /** Default maximum number of distinct values. */
+    public static final int DEFAULT_MAX_ENTRIES = 1 << 18;
+
+    private static final int STRIPES = 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final int maxEntries;
+
+    /**
+     * Creates a dictionary holding up to {@link #DEFAULT_MAX_ENTRIES} values.
+     */
+    public StringDictionary() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Creates a dictionary.
+     *
+     * @param maxEntries most distinct values kept at one time
+     * @throws IllegalArgumentException if maxEntries is less than 1
+     */
+    public StringDictionary(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        int perStripe = Math.max(1, maxEntries / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+    }
+
+    /**
+     * Returns the canonical instance equal to a value, adding the value if
+     * it is new and there is room.
+     *
+     * @param value value to look up; null is returned as is
+     * @return an equal String, the same instance for every equal value in the pool
+     */
+    public String canonicalize(String value) {
+        if (value == null) {
+            return null;
+        }
+        int h = value.hashCode();
+        Stripe stripe = stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+        synchronized (stripe) {
+            stripe.lookups++;
+            WeakReference<String> ref = stripe.map.get(value);
+            String canonical = ref == null ? null : ref.get();
+            if (canonical != null) {
+                stripe.hits++;
+                if (canonical != value) {
+                    stripe.bytesSaved += sizeOf(value);
+                }
+                return canonical;
+            }
+            if (stripe.map.size() < stripe.capacity) {
+                stripe.map.put(value, new WeakReference<>(value));
+            }
+            return value;
+        }
+    }
+
+    public int getMaxEntries() {return maxEntries;}
+
+    /**
+     * @return values currently pooled; entries freed by the GC are not counted
+     */
+    public int size() {
+        int n = 0;
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                n += s.map.size();
+            }
+        }
+        return n;
+    }
+
+    /**
+     * @return calls to {@link #canonicalize} with a non-null value
+     */
+    public long getLookups() {
+        long n = 0;
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                n += s.lookups;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * @return lookups that found an equal value already pooled
+     */
+    public long getHits() {
+        long n = 0;
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                n += s.hits;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * @return hits divided by lookups, or 0 before the first lookup
+     */
+    public double getHitRate() {
+        long lookups = getLookups();
+        return lookups == 0 ? 0 : (double) getHits() / lookups;
+    }
+
+    /**
+     * Estimated heap saved: the size of every duplicate String replaced by
+     * a pooled one, assuming the caller drops the duplicate. Counts since
+     * creation, so it overstates the saving once those contacts are gone.
+     *
+     * @return bytes saved
+     */
+    public long getBytesSaved() {
+        long n = 0;
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                n += s.bytesSaved;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Empties the pool. Values already shared stay shared; later equal
+     * values start a new canonical instance.
+     */
+    public void clear() {
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                s.map.clear();
+            }
+        }
+    }
+
+    // ---- private helpers ----
+
+    /**
+     * Heap taken by a String with compact strings on: the String object
+     * plus its byte array, both 8-byte aligned.
+     */
+    private static long sizeOf(String s) {
+        boolean latin1 = true;
+        for (int i = 0; i < s.length() && latin1; i++) {
+            latin1 = s.charAt(i) <= 0xFF;
+        }
+        long array = 16 + (long) s.length() * (latin1 ? 1 : 2);
+        return 24 + ((array + 7) & ~7L);
+    }
+
+    private static final class Stripe {
+        final WeakHashMap<String, WeakReference<String>> map = new WeakHashMap<>();
+        final int capacity;
+        long lookups;
+        long hits;
+        long bytesSaved;
+
+        Stripe(int capacity) {
+            this.capacity = capacity;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package contact;
+
+import java.util.List;
+
+/**
+ * Repository that keeps contacts in memory and rewrites a
+ * {@link ContactStorage} text file after every change.
+ *
+ * This is the setup ContactApp has always used: simple and human-readable,
+ * but each write costs time proportional to the whole data set. The ID
+ * filter and any field indexes are kept in storage sidecars and saved on
+ * close, so a clean restart reuses them instead of rebuilding.
+ */
+public class TextFileContactRepository extends InMemoryContactRepository {
+
+    private final ContactStorage storage;
+
+    /**
+     * Opens a text file, loading whatever it already holds.
+     *
+     * @param storage storage to load from and save to
+     * @throws IllegalArgumentException if storage is null or the file holds duplicate IDs
+     * @throws IllegalStateException if the file cannot be read
+     */
+    public TextFileContactRepository(ContactStorage storage) {
+        this(storage, new ContactQuery.Field[0]);
+    }
+
+    /**
+     * Opens a text file and indexes the given fields, reusing the index
+     * files saved by the last {@link #close()} when they still match.
+     *
+     * @param storage storage to load from and save to
+     * @param indexed fields to index for queries
+     * @throws IllegalArgumentException if storage or a field is null, or the file holds duplicate IDs
+     * @throws IllegalStateException if the file cannot be read
+     */
+    public TextFileContactRepository(ContactStorage storage, ContactQuery.Field... indexed) {
+        if (storage == null) {
+            throw new IllegalArgumentException("storage cannot be null");
+        }
+        this.storage = storage;
+        service.enableIdFilter(0.01);
+        service.loadAll(storage.load(), storage.loadIdFilter());
+        storage.restoreIndexes(service, indexed);
+    }
+
+    public ContactStorage getStorage() {return storage;}
+
+    @Override
+    public void add(Contact contact) {
+        synchronized (service) {
+            super.add(contact);
+            save();
+        }
+    }
+
+    @Override
+    public void addAll(List<Contact> contacts) {
+        synchronized (service) {
+            super.addAll(contacts);
+            save();
+        }
+    }
+
+    @Override
+    public void update(String id, ContactField field, String value) {
+        synchronized (service) {
+            super.update(id, field, value);
+            save();
+        }
+    }
+
+    @Override
+    public void delete(String id) {
+        synchronized (service) {
+            super.delete(id);
+            save();
+        }
+    }
+
+    @Override
+    public void close() {
+        storage.saveIdFilter(service.getIdFilter());
+        storage.saveIndexes(service);
+    }
+
+    private void save() {
+        storage.save(service.getAllContacts());
+    }
+}
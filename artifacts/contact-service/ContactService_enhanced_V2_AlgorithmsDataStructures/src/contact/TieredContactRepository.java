@@ -0,0 +1,557 @@
+package contact;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * In-memory repository that keeps only frequently used contacts as live
+ * Contact objects and packs the rest off-heap.
+ *
+ * The hot tier is an access-ordered map holding up to {@code hotCapacity}
+ * contacts. The cold tier stores each contact as its {@link PackedContact}
+ * record in direct-memory slabs, with only an ID-to-address map on the
+ * heap, so a cold contact costs a fraction of a live one and adds nothing
+ * for the GC to trace. A {@link FrequencySketch} counts every access.
+ *
+ * Reads of a cold contact decode a copy and queue the ID for promotion;
+ * updates promote at once so the change lands on a live object. A daemon
+ * thread does the rest in small batches: it demotes least recently used
+ * contacts while the hot tier is over capacity, and admits queued contacts
+ * only when the sketch says they are used more often than the contact they
+ * would push out, so one scan over cold data cannot flush the hot set. It
+ * also compacts the slabs once deleted and promoted records take up more
+ * room than live ones, emptying the sparsest slab a batch of records at a
+ * time so no single pause copies the whole tier.
+ *
+ * Tier sizes, hit counts and moves are available from the getters and as
+ * the periodic {@code contact.Tiering} flight recorder event. Cold data
+ * counts against {@code -XX:MaxDirectMemorySize}.
+ */
+public class TieredContactRepository implements ContactRepository {
+
+    /** Default hot tier size. */
+    public static final int DEFAULT_HOT_CAPACITY = 100_000;
+
+    private static final long MAINTENANCE_MILLIS = 100;
+    private static final int MAINTENANCE_BATCH = 4096;
+    private static final int MAX_PENDING_PROMOTIONS = 8192;
+
+    private final int hotCapacity;
+    private final LinkedHashMap<String, Contact> hot;
+    private final ColdStore cold = new ColdStore();
+    private final FrequencySketch sketch;
+    private final ArrayDeque<String> pendingPromotions = new ArrayDeque<>();
+    private final Thread maintainer;
+    private final Runnable metrics = this::emitMetrics;
+    private volatile boolean running = true;
+
+    private long hotHits;
+    private long coldHits;
+    private long promotions;
+    private long demotions;
+
+    /**
+     * Creates an empty repository with the default hot tier size.
+     */
+    public TieredContactRepository() {
+        this(DEFAULT_HOT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty repository.
+     *
+     * @param hotCapacity most contacts kept as live objects
+     * @throws IllegalArgumentException if hotCapacity is not positive
+     */
+    public TieredContactRepository(int hotCapacity) {
+        if (hotCapacity <= 0) {
+            throw new IllegalArgumentException("hotCapacity must be positive");
+        }
+        this.hotCapacity = hotCapacity;
+        this.hot = new LinkedHashMap<>(16, 0.75f, true);
+        this.sketch = new FrequencySketch(hotCapacity);
+        FlightRecorder.addPeriodicEvent(ContactEvents.Tiering.class, metrics);
+        maintainer = new Thread(this::maintainLoop, "contact-tiering");
+        maintainer.setDaemon(true);
+        maintainer.start();
+    }
+
+    @Override
+    public synchronized void add(Contact contact) {
+        if (contact == null) {
+            throw new IllegalArgumentException("contact cannot be null");
+        }
+        String id = contact.getContactID();
+        if (contains(id)) {
+            throw new IllegalArgumentException("contact ID already exists");
+        }
+        sketch.increment(id);
+        putHot(id, contact);
+    }
+
+    @Override
+    public synchronized void addAll(List<Contact> contacts) {
+        if (contacts == null) {
+            throw new IllegalArgumentException("contacts cannot be null");
+        }
+        Set<String> seen = new HashSet<>(contacts.size() * 4 / 3 + 1);
+        for (Contact c : contacts) {
+            if (c == null) {
+                throw new IllegalArgumentException("contact cannot be null");
+            }
+            if (!seen.add(c.getContactID()) || contains(c.getContactID())) {
+                throw new IllegalArgumentException("contact ID already exists");
+            }
+        }
+        // Bulk loads fill the free hot room and go straight to cold after that
+        for (Contact c : contacts) {
+            if (hot.size() < hotCapacity) {
+                hot.put(c.getContactID(), c);
+            } else {
+                cold.put(c);
+            }
+        }
+    }
+
+    @Override
+    public synchronized Contact get(String id) {
+        if (id == null) {
+            throw new IllegalArgumentException("Contact ID not found");
+        }
+        Contact c = hot.get(id);
+        if (c != null) {
+            sketch.increment(id);
+            hotHits++;
+            return c;
+        }
+        c = cold.get(id);
+        if (c == null) {
+            throw new IllegalArgumentException("Contact ID not found");
+        }
+        sketch.increment(id);
+        coldHits++;
+        if (pendingPromotions.size() < MAX_PENDING_PROMOTIONS) {
+            pendingPromotions.add(id);
+            notifyAll();
+        }
+        return c;
+    }
+
+    @Override
+    public synchronized void update(String id, ContactField field, String value) {
+        if (field == null) {
+            throw new IllegalArgumentException("field cannot be null");
+        }
+        if (id == null) {
+            throw new IllegalArgumentException("Contact ID not found");
+        }
+        Contact c = hot.get(id);
+        if (c != null) {
+            sketch.increment(id);
+            hotHits++;
+            field.set(c, value);
+            return;
+        }
+        c = cold.get(id);
+        if (c == null) {
+            throw new IllegalArgumentException("Contact ID not found");
+        }
+        field.set(c, value); // validates before anything moves
+        sketch.increment(id);
+        coldHits++;
+        cold.remove(id);
+        promotions++;
+        putHot(id, c);
+    }
+
+    @Override
+    public synchronized void delete(String id) {
+        if (id == null || (hot.remove(id) == null && !cold.remove(id))) {
+            throw new IllegalArgumentException("contact ID does not exist");
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return hot.size() + cold.size();
+    }
+
+    @Override
+    public synchronized void forEach(Consumer<? super Contact> action) {
+        // Scans do not count as accesses, so they leave the tiers as they are
+        for (Contact c : new ArrayList<>(hot.values())) {
+            action.accept(c);
+        }
+        cold.forEach(action);
+    }
+
+    /**
+     * Stops the background thread and frees the cold tier.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        FlightRecorder.removePeriodicEvent(metrics);
+        try {
+            maintainer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            hot.clear();
+            cold.clear();
+            pendingPromotions.clear();
+        }
+    }
+
+    /**
+     * Runs background maintenance until nothing is left to do: demotes down
+     * to capacity, handles queued promotions and compacts the cold tier.
+     * The background thread does this on its own; calling it is only
+     * useful to observe a settled state, e.g. in tests or tools.
+     */
+    public void maintain() {
+        boolean more = true;
+        while (more) {
+            synchronized (this) {
+                more = maintainBatch();
+            }
+        }
+    }
+
+    public int getHotCapacity() {return hotCapacity;}
+    public synchronized int getHotCount() {return hot.size();}
+    public synchronized int getColdCount() {return cold.size();}
+    /** @return bytes of live cold records */
+    public synchronized long getColdBytes() {return cold.liveBytes;}
+    /** @return direct memory allocated for the cold tier, including dead records */
+    public synchronized long getOffHeapBytes() {return cold.offHeapBytes();}
+    /** @return lookups and updates served by a live contact */
+    public synchronized long getHotHits() {return hotHits;}
+    /** @return lookups and updates that had to decode a cold contact */
+    public synchronized long getColdHits() {return coldHits;}
+    public synchronized long getPromotions() {return promotions;}
+    public synchronized long getDemotions() {return demotions;}
+
+    // ---- private helpers ----
+
+    private boolean contains(String id) {
+        return hot.containsKey(id) || cold.contains(id);
+    }
+
+    private void putHot(String id, Contact c) {
+        hot.put(id, c);
+        if (hot.size() > hotCapacity) {
+            notifyAll();
+        }
+    }
+
+    private void maintainLoop() {
+        while (running) {
+            synchronized (this) {
+                if (running && !hasWork()) {
+                    try {
+                        wait(MAINTENANCE_MILLIS);
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                }
+                if (running) {
+                    maintainBatch();
+                }
+            }
+            // Lets callers waiting on the monitor in between batches
+            Thread.yield();
+        }
+    }
+
+    private boolean hasWork() {
+        return hot.size() > hotCapacity || !pendingPromotions.isEmpty() || cold.needsCompaction();
+    }
+
+    /**
+     * Does a bounded amount of maintenance. Must hold the lock.
+     *
+     * @return true if work is left for another batch
+     */
+    private boolean maintainBatch() {
+        int budget = MAINTENANCE_BATCH;
+        while (budget > 0 && !pendingPromotions.isEmpty()) {
+            budget--;
+            String id = pendingPromotions.poll();
+            if (!cold.contains(id)) {
+                continue; // promoted, deleted or queued twice
+            }
+            if (hot.size() >= hotCapacity) {
+                String victim = hot.keySet().iterator().next();
+                if (sketch.frequency(id) <= sketch.frequency(victim)) {
+                    continue; // not worth evicting a contact used as often
+                }
+                demote(victim);
+            }
+            hot.put(id, cold.take(id));
+            promotions++;
+        }
+        Iterator<Map.Entry<String, Contact>> eldest = hot.entrySet().iterator();
+        while (budget > 0 && hot.size() > hotCapacity) {
+            budget--;
+            Map.Entry<String, Contact> e = eldest.next();
+            cold.put(e.getValue());
+            eldest.remove();
+            demotions++;
+        }
+        if (budget > 0 && cold.needsCompaction()) {
+            budget -= cold.compact(budget);
+        }
+        return budget == 0 && hasWork();
+    }
+
+    private void demote(String id) {
+        cold.put(hot.remove(id));
+        demotions++;
+    }
+
+    private void emitMetrics() {
+        ContactEvents.Tiering event = new ContactEvents.Tiering();
+        synchronized (this) {
+            event.hotContacts = hot.size();
+            event.coldContacts = cold.size();
+            event.coldBytes = cold.liveBytes;
+            event.offHeapBytes = cold.offHeapBytes();
+            event.hotHits = hotHits;
+            event.coldHits = coldHits;
+            event.promotions = promotions;
+            event.demotions = demotions;
+        }
+        event.commit();
+    }
+
+    /**
+     * Packed records in 1 MiB direct buffers. A record is a 2-byte length,
+     * the phone as a long, then the PackedContact bytes; its address is the
+     * slab number and offset in one long. Records are only appended, so
+     * replacing or removing one leaves a dead gap until the slab holding it
+     * is compacted: its live records are moved to the tail and the slab is
+     * freed. Slab numbers stay put, so other addresses never change.
+     * Not thread-safe; the repository lock guards it.
+     */
+    private static final class ColdStore {
+        static final int SLAB_BYTES = 1 << 20;
+        private static final int HEADER_BYTES = 2 + 8;
+
+        private final List<ByteBuffer> slabs = new ArrayList<>(); // null where a slab was freed
+        private final ArrayDeque<Integer> freeSlabs = new ArrayDeque<>();
+        private final Map<String, Long> index = new HashMap<>();
+        private final byte[] scratch = new byte[256];
+        private int[] slabLive = new int[16];
+        private int slabCount;
+        private ByteBuffer tail;
+        private int tailSlab;
+        private int victim = -1; // slab being emptied by compaction, or -1
+        private int victimPos;
+        private long liveBytes;
+        private long deadBytes;
+
+        int size() {return index.size();}
+
+        long offHeapBytes() {return (long) slabCount * SLAB_BYTES;}
+
+        boolean contains(String id) {
+            return index.containsKey(id);
+        }
+
+        void put(Contact c) {
+            PackedContact packed = PackedContact.of(c);
+            byte[] record = packed.packedRecord();
+            int length = HEADER_BYTES + record.length;
+            long address = reserve(length);
+            tail.putShort((short) record.length).putLong(packed.packedPhone()).put(record);
+            Long old = index.put(c.getContactID(), address);
+            if (old != null) {
+                release(old);
+            }
+            liveBytes += length;
+        }
+
+        /**
+         * @return a decoded copy, or null if the ID is not in this tier
+         */
+        Contact get(String id) {
+            Long address = index.get(id);
+            return address == null ? null : decode(address);
+        }
+
+        /**
+         * @return false if the ID is not in this tier
+         */
+        boolean remove(String id) {
+            Long address = index.remove(id);
+            if (address == null) {
+                return false;
+            }
+            release(address);
+            return true;
+        }
+
+        /**
+         * Removes a record and returns it decoded.
+         *
+         * @return the contact, or null if the ID is not in this tier
+         */
+        Contact take(String id) {
+            Long address = index.remove(id);
+            if (address == null) {
+                return null;
+            }
+            Contact c = decode(address);
+            release(address);
+            return c;
+        }
+
+        void forEach(Consumer<? super Contact> action) {
+            // Copy the addresses first so the action may call back into the repository
+            long[] addresses = new long[index.size()];
+            int n = 0;
+            for (Long a : index.values()) {
+                addresses[n++] = a;
+            }
+            for (long a : addresses) {
+                action.accept(decode(a));
+            }
+        }
+
+        boolean needsCompaction() {
+            return victim >= 0 || (deadBytes >= SLAB_BYTES && deadBytes > liveBytes);
+        }
+
+        /**
+         * Empties slabs, sparsest first, moving their live records to the
+         * tail. Stops after {@code budget} records and resumes where it
+         * left off on the next call.
+         *
+         * @return records examined, at most budget
+         */
+        int compact(int budget) {
+            int work = 0;
+            while (work < budget) {
+                if (victim < 0) {
+                    if (!(deadBytes >= SLAB_BYTES && deadBytes > liveBytes)) {
+                        break;
+                    }
+                    victim = sparsestSlab();
+                    if (victim < 0) {
+                        victim = tailSlab; // only the tail holds anything: retire it
+                        tail = null;
+                    }
+                    victimPos = 0;
+                }
+                ByteBuffer slab = slabs.get(victim);
+                if (victimPos >= slab.position()) {
+                    // Everything in it is dead now: moved records were counted as released
+                    deadBytes -= slab.position();
+                    slabs.set(victim, null);
+                    freeSlabs.add(victim);
+                    slabCount--;
+                    victim = -1;
+                    continue;
+                }
+                int length = HEADER_BYTES + slab.getShort(victimPos);
+                long address = ((long) victim << 32) | victimPos;
+                String id = decode(address).getContactID();
+                Long current = index.get(id);
+                if (current != null && current == address) {
+                    long moved = reserve(length);
+                    tail.put(tail.position(), slab, victimPos, length);
+                    tail.position(tail.position() + length);
+                    index.put(id, moved);
+                    release(address);
+                    liveBytes += length;
+                }
+                victimPos += length;
+                work++;
+            }
+            return work;
+        }
+
+        void clear() {
+            slabs.clear();
+            freeSlabs.clear();
+            index.clear();
+            Arrays.fill(slabLive, 0);
+            slabCount = 0;
+            tail = null;
+            victim = -1;
+            liveBytes = 0;
+            deadBytes = 0;
+        }
+
+        /**
+         * Makes room for a record at the end of the tail slab, starting a
+         * new slab (reusing a freed number) when it is full.
+         *
+         * @return address of the reserved space
+         */
+        private long reserve(int length) {
+            if (tail == null || tail.remaining() < length) {
+                tail = ByteBuffer.allocateDirect(SLAB_BYTES);
+                Integer free = freeSlabs.poll();
+                if (free == null) {
+                    tailSlab = slabs.size();
+                    slabs.add(tail);
+                    if (tailSlab == slabLive.length) {
+                        slabLive = Arrays.copyOf(slabLive, tailSlab * 2);
+                    }
+                } else {
+                    tailSlab = free;
+                    slabs.set(tailSlab, tail);
+                }
+                slabLive[tailSlab] = 0;
+                slabCount++;
+            }
+            slabLive[tailSlab] += length;
+            return ((long) tailSlab << 32) | tail.position();
+        }
+
+        private int sparsestSlab() {
+            int best = -1;
+            for (int i = 0; i < slabs.size(); i++) {
+                if (slabs.get(i) != null && slabs.get(i) != tail && (best < 0 || slabLive[i] < slabLive[best])) {
+                    best = i;
+                }
+            }
+            return best;
+        }
+
+        private Contact decode(long address) {
+            ByteBuffer slab = slabs.get((int) (address >>> 32));
+            int offset = (int) address;
+            int length = slab.getShort(offset);
+            long phone = slab.getLong(offset + 2);
+            // The record is parsed by its field headers, so a longer scratch array is fine
+            slab.get(offset + HEADER_BYTES, scratch, 0, length);
+            return PackedContact.fromPacked(scratch, phone).toContact();
+        }
+
+        private void release(long address) {
+            int slab = (int) (address >>> 32);
+            int length = HEADER_BYTES + slabs.get(slab).getShort((int) address);
+            slabLive[slab] -= length;
+            liveBytes -= length;
+            deadBytes += length;
+        }
+    }
+}